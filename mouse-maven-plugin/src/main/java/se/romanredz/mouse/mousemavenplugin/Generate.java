@@ -103,6 +103,16 @@ public class Generate extends AbstractMojo {
      */
     private boolean mouseSkeleton;
 
+    /**
+     * Declares value types of rules for the semantics skeleton, each as type=rules,
+     * where rules are separated by commas. Semantic procedures of these rules in the skeleton
+     * set value of that type; numeric types and char use the primitive slot of Phrase.
+     * Used only with skeleton.
+     *
+     * @parameter alias="valueTypes"
+     */
+    private List<String> mouseValueTypes;
+
     /**
      * Generate memoizing version of the parser.
      *
@@ -117,6 +127,32 @@ public class Generate extends AbstractMojo {
      */
     private boolean mouseInstrumented;
 
+    /**
+     * Generate parser that first tries to parse the input without keeping error information,
+     * and parses it again with that information only if the first attempt fails.
+     * Semantic actions are executed again in the second attempt.
+     *
+     * @parameter expression="${mouse.fastFirstPass}" alias="fastFirstPass"
+     */
+    private boolean mouseFastFirstPass;
+
+    /**
+     * Generate iterative parser, which runs its parsing procedures using an explicit stack
+     * instead of Java calls, so that deeply nested input does not overflow the Java stack.
+     *
+     * @parameter expression="${mouse.iterative}" alias="iterative"
+     */
+    private boolean mouseIterative;
+
+    /**
+     * Generate event-streaming parser, which reports recognized rules and tokens to a listener
+     * instead of calling semantic actions. Cannot be combined with memoizing, instrumented
+     * or fastFirstPass.
+     *
+     * @parameter expression="${mouse.events}" alias="events"
+     */
+    private boolean mouseEvents;
+
 
     /**
      * @required
@@ -194,6 +230,25 @@ public class Generate extends AbstractMojo {
             args.add("-T");
         }
 
+        if (mouseFastFirstPass) {
+            args.add("-F");
+        }
+
+        if (mouseIterative) {
+            args.add("-I");
+        }
+
+        if (mouseEvents) {
+            args.add("-E");
+        }
+
+        if (mouseValueTypes != null) {
+            for (String v : mouseValueTypes) {
+                args.add("-V");
+                args.add(v);
+            }
+        }
+
         getLog().info(message.toString());
         String[] argsArr = args.toArray(new String[args.size()]);
 
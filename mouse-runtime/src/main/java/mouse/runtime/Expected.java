@@ -0,0 +1,97 @@
+//=========================================================================
+//
+//  Part of PEG parser generator Mouse.
+//
+//  Copyright (C) 2026 by Roman R. Redziejowski (www.romanredz.se).
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//-------------------------------------------------------------------------
+//
+//  Change log
+//   261018 Created for version 1.10.
+//
+//=========================================================================
+
+package mouse.runtime;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+//
+//  Expected
+//
+//-------------------------------------------------------------------------
+//
+//  Table of texts that describe expressions in failure messages,
+//  such as "'a'", "not [a-z]", or the diagnostic name of a Rule.
+//  The failure history kept in Phrase objects refers to these texts
+//  by their numbers in the table ('ids'), and the texts are looked up
+//  only when the message is actually produced.
+//
+//  The table is initialized with texts listed by the generated parser,
+//  numbered in the order of the list. Texts not found there (from
+//  'errAdd' or from parsers generated by earlier versions of Mouse)
+//  are added when first encountered.
+//
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+class Expected
+{
+  //-------------------------------------------------------------------
+  //  Texts, indexed by id.
+  //-------------------------------------------------------------------
+  private final Vector<String> texts = new Vector<String>();
+
+  //-------------------------------------------------------------------
+  //  Ids of texts. Built only when a text is to be looked up.
+  //-------------------------------------------------------------------
+  private Hashtable<String,Integer> ids = null;
+
+  //-------------------------------------------------------------------
+  //  Create table with texts from 'list' (may be null).
+  //-------------------------------------------------------------------
+  Expected(final String[] list)
+    {
+      if (list==null) return;
+      for (String s: list)
+        texts.add(s);
+    }
+
+  //-------------------------------------------------------------------
+  //  Get text identified by 'id'.
+  //-------------------------------------------------------------------
+  String text(int id)
+    { return texts.elementAt(id); }
+
+  //-------------------------------------------------------------------
+  //  Get id of text 's', adding 's' to the table if not there.
+  //-------------------------------------------------------------------
+  int id(final String s)
+    {
+      if (ids==null)
+      {
+        ids = new Hashtable<String,Integer>();
+        for (int i=texts.size()-1;i>=0;i--)
+          ids.put(texts.elementAt(i),i);
+      }
+      Integer found = ids.get(s);
+      if (found!=null) return found;
+      int id = texts.size();
+      texts.add(s);
+      ids.put(s,id);
+      return id;
+    }
+}
@@ -0,0 +1,437 @@
+//=========================================================================
+//
+//  Part of PEG parser generator Mouse.
+//
+//  Copyright (C) 2026 by Roman R. Redziejowski (www.romanredz.se).
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//-------------------------------------------------------------------------
+//
+//  Change log
+//   261018 Created for version 1.10.
+//   261018 Added optional primitive values of nodes ('num'),
+//          saved with the tree by ParseTreeFile.
+//   261018 The tree is replaced when the parser has started a new parse,
+//          also if no event was passed ('sync').
+//   261018 Phrases of rule nodes presented by Rule have 'ruleId'.
+//   261018 Added 'complete': true if the parse that built the tree
+//          has succeeded.
+//
+//=========================================================================
+
+package mouse.runtime;
+
+import java.util.Arrays;
+
+
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+//
+//  ParseTree
+//
+//-------------------------------------------------------------------------
+//
+//  Concrete syntax tree stored in parallel int arrays, built from
+//  the events of a parser generated with option -E:
+//
+//    ParseTree tree = new ParseTree(parser);
+//    parser.parse(src);
+//
+//  Each node is identified by its index. Node 0 is the root.
+//  For node n:
+//    rule[n]    number of the rule, or TERM for terminal;
+//    start[n]   start of the text represented by the node;
+//    end[n]     end of that text;
+//    first[n]   first child, or -1;
+//    next[n]    next sibling, or -1.
+//  Nodes are numbered in the order of their start (preorder).
+//  The children of a rule node are the same as the rhs items
+//  of its Phrase seen by semantic actions: nodes of rules and
+//  of terminals, with inner expressions flattened.
+//
+//  Optionally, a node can have a primitive value, set by 'putLong'
+//  or 'putDouble'; the array 'num' is created by first such call.
+//
+//  The tree can be traversed by index, or using Cursor.
+//  ParseTreeFile saves it in a file to be used instead of parsing
+//  unchanged input again.
+//  Rule is an implementation of CurrentRule that presents a node
+//  as Phrase with its children as rhs, so that semantic procedures
+//  can be run on the tree after parsing.
+//
+//  The tree is replaced at the start of each parse. After a failed
+//  parse, it contains what has been committed before the failure;
+//  'complete' tells if the parse has ended successfully.
+//
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+public class ParseTree implements ParserEvents.Listener
+{
+  //-------------------------------------------------------------------
+  //  Rule number of terminal node.
+  //-------------------------------------------------------------------
+  public static final int TERM = -1;
+
+  //-------------------------------------------------------------------
+  //  The parser and its input.
+  //-------------------------------------------------------------------
+  final ParserEvents parser;
+  Source source;
+  int parse = -1;                   // Number of parse that built the tree
+
+  //-------------------------------------------------------------------
+  //  Nodes.
+  //-------------------------------------------------------------------
+  int[] rule  = new int[1024];
+  int[] start = new int[1024];
+  int[] end   = new int[1024];
+  int[] first = new int[1024];
+  int[] next  = new int[1024];
+  long[] num  = null;
+  int size = 0;
+
+  //-------------------------------------------------------------------
+  //  While building: open nodes and their last children.
+  //-------------------------------------------------------------------
+  int[] open = new int[64];
+  int[] last = new int[64];
+  int depth = 0;
+
+  //-------------------------------------------------------------------
+  //  Constructor: attach to 'parser'.
+  //  Disables merging of tokens, so that each terminal has its node.
+  //-------------------------------------------------------------------
+  public ParseTree(ParserEvents parser)
+    {
+      this.parser = parser;
+      parser.setListener(this);
+      parser.setMergeTokens(false);
+    }
+
+
+  //=====================================================================
+  //
+  //  Access to nodes
+  //
+  //=====================================================================
+
+  public int size()
+    {
+      sync();
+      return size;
+    }
+
+  public int root()
+    { return size()>0? 0 : -1; }
+
+  //-------------------------------------------------------------------
+  //  True if the tree is that of a parse that ended successfully.
+  //  False while parsing, after a failed parse, and before any parse.
+  //-------------------------------------------------------------------
+  public boolean complete()
+    {
+      sync();
+      return parse>0 && parser.succeeded==parse;
+    }
+
+  public int rule(int n)
+    { return rule[n]; }
+
+  public int start(int n)
+    { return start[n]; }
+
+  public int end(int n)
+    { return end[n]; }
+
+  public int firstChild(int n)
+    { return first[n]; }
+
+  public int nextSibling(int n)
+    { return next[n]; }
+
+  public boolean isTerm(int n)
+    { return rule[n]==TERM; }
+
+  //-------------------------------------------------------------------
+  //  Name of the node's rule; empty for terminal.
+  //-------------------------------------------------------------------
+  public String name(int n)
+    { return rule[n]==TERM? "" : parser.ruleName(rule[n]); }
+
+  //-------------------------------------------------------------------
+  //  Text represented by the node.
+  //-------------------------------------------------------------------
+  public String text(int n)
+    { return source.at(start[n],end[n]); }
+
+  //-------------------------------------------------------------------
+  //  Primitive value of the node: long, or bits of double.
+  //-------------------------------------------------------------------
+  public void putLong(int n, long v)
+    {
+      if (num==null) num = new long[rule.length];
+      num[n] = v;
+    }
+
+  public long getLong(int n)
+    { return num==null? 0 : num[n]; }
+
+  public void putDouble(int n, double v)
+    { putLong(n,Double.doubleToRawLongBits(v)); }
+
+  public double getDouble(int n)
+    { return Double.longBitsToDouble(getLong(n)); }
+
+  //-------------------------------------------------------------------
+  //  New Cursor at the root.
+  //-------------------------------------------------------------------
+  public Cursor cursor()
+    {
+      sync();
+      return new Cursor();
+    }
+
+
+  //=====================================================================
+  //
+  //  Implementation of Listener
+  //
+  //=====================================================================
+
+  public void startRule(int r, int s)
+    {
+      sync();
+      int n = add(r,s,-1);
+      if (depth==open.length)
+      {
+        open = Arrays.copyOf(open,2*depth);
+        last = Arrays.copyOf(last,2*depth);
+      }
+      open[depth] = n;
+      last[depth] = -1;
+      depth++;
+    }
+
+  public void endRule(int r, int s, int e)
+    {
+      depth--;
+      end[open[depth]] = e;
+    }
+
+  public void token(int s, int e)
+    { add(TERM,s,e); }
+
+  //-------------------------------------------------------------------
+  //  If the parser started a new parse, start new empty tree.
+  //  Done here rather than on first event, so that a parse that
+  //  fails before passing any event leaves the tree empty.
+  //-------------------------------------------------------------------
+  private void sync()
+    {
+      if (parse==parser.parses) return;
+      parse = parser.parses;
+      source = parser.source;
+      size = 0;
+      depth = 0;
+      num = null;
+    }
+
+  //-------------------------------------------------------------------
+  //  Add node as last child of the innermost open node.
+  //-------------------------------------------------------------------
+  private int add(int r, int s, int e)
+    {
+      if (size==rule.length)
+      {
+        int cap = 2*size;
+        rule  = Arrays.copyOf(rule,cap);
+        start = Arrays.copyOf(start,cap);
+        end   = Arrays.copyOf(end,cap);
+        first = Arrays.copyOf(first,cap);
+        next  = Arrays.copyOf(next,cap);
+        if (num!=null) num = Arrays.copyOf(num,cap);
+      }
+      int n = size++;
+      rule[n] = r;
+      start[n] = s;
+      end[n] = e;
+      first[n] = -1;
+      next[n] = -1;
+      if (depth>0)
+      {
+        int d = depth-1;
+        if (last[d]<0) first[open[d]] = n;
+        else next[last[d]] = n;
+        last[d] = n;
+      }
+      return n;
+    }
+
+
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //
+  //  Cursor
+  //
+  //-----------------------------------------------------------------------
+  //
+  //  Position in the tree that can move to first child, next sibling,
+  //  or parent. The moves return false, without moving, if there is
+  //  no such node.
+  //
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+  public class Cursor
+  {
+    int node = 0;
+    int[] path = new int[64];       // Ancestors of 'node'
+    int depth = 0;
+
+    Cursor()
+      {}
+
+    public boolean firstChild()
+      {
+        int c = first[node];
+        if (c<0) return false;
+        if (depth==path.length)
+          path = Arrays.copyOf(path,2*depth);
+        path[depth++] = node;
+        node = c;
+        return true;
+      }
+
+    public boolean nextSibling()
+      {
+        int s = next[node];
+        if (s<0) return false;
+        node = s;
+        return true;
+      }
+
+    public boolean parent()
+      {
+        if (depth==0) return false;
+        node = path[--depth];
+        return true;
+      }
+
+    public int node()
+      { return node; }
+
+    public int rule()
+      { return rule[node]; }
+
+    public String name()
+      { return ParseTree.this.name(node); }
+
+    public int start()
+      { return start[node]; }
+
+    public int end()
+      { return end[node]; }
+
+    public boolean isTerm()
+      { return rule[node]==TERM; }
+
+    public String text()
+      { return ParseTree.this.text(node); }
+  }
+
+
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //
+  //  Rule
+  //
+  //-----------------------------------------------------------------------
+  //
+  //  CurrentRule for semantic procedures run on the tree. After 'at(n)',
+  //  'lhs' is the Phrase for node n, and 'rhs(i)' that for its i-th child.
+  //  Phrases are created when first requested and kept, so that
+  //  the value set in 'lhs' is seen later in 'rhs' of the parent.
+  //  The Phrases of children of the previous node are dropped
+  //  by 'at', as the parser drops rhs after semantic action.
+  //  To run semantics bottom-up as the parser would:
+  //
+  //    ParseTree.Rule r = tree.new Rule();
+  //    sem.rule = r;
+  //    ... for each node n in postorder: r.at(n); sem.<action>();
+  //
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+  public class Rule implements CurrentRule
+  {
+    Phrase[] phrases = new Phrase[size()];
+    int node;
+    int[] kids = new int[16];
+    int kidCount;
+
+    public Rule()
+      {}
+
+    //-----------------------------------------------------------------
+    //  Set current node.
+    //-----------------------------------------------------------------
+    public void at(int n)
+      {
+        for (int i=0; i<kidCount; i++)
+          phrases[kids[i]] = null;
+        node = n;
+        kidCount = 0;
+        for (int c=first[n]; c>=0; c=next[c])
+        {
+          if (kidCount==kids.length)
+            kids = Arrays.copyOf(kids,2*kidCount);
+          kids[kidCount++] = c;
+        }
+      }
+
+    public Phrase lhs()
+      { return phrase(node); }
+
+    public int rhsSize()
+      { return kidCount; }
+
+    public Phrase rhs(int i)
+      {
+        if (i<0 || i>=kidCount)
+          throw new ArrayIndexOutOfBoundsException(i);
+        return phrase(kids[i]);
+      }
+
+    public String rhsText(int i,int j)
+      {
+        if (j<=i) return "";
+        if (i<0 || j>kidCount)
+          throw new ArrayIndexOutOfBoundsException(i<0? i : j-1);
+        return source.at(start[kids[i]],end[kids[j-1]]);
+      }
+
+    //-----------------------------------------------------------------
+    //  Phrase for node n.
+    //-----------------------------------------------------------------
+    Phrase phrase(int n)
+      {
+        Phrase p = phrases[n];
+        if (p==null)
+        {
+          String name = ParseTree.this.name(n);
+          p = new Phrase(name,name,start[n],source,parser.expected);
+          p.end = end[n];
+          p.success = true;
+          if (rule[n]!=TERM) p.ruleId = rule[n];
+          phrases[n] = p;
+        }
+        return p;
+      }
+  }
+}
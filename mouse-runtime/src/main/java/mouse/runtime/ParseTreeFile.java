@@ -0,0 +1,336 @@
+//=========================================================================
+//
+//  Part of PEG parser generator Mouse.
+//
+//  Copyright (C) 2026 by Roman R. Redziejowski (www.romanredz.se).
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//-------------------------------------------------------------------------
+//
+//  Change log
+//   261018 Created for version 1.10.
+//   261018 'open' receives the parser and checks that the file
+//          has the same rule names.
+//   261018 'write' refuses a tree whose parse has not succeeded.
+//
+//=========================================================================
+
+package mouse.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+//
+//  ParseTreeFile
+//
+//-------------------------------------------------------------------------
+//
+//  ParseTree saved in a binary file, to be used instead of parsing
+//  again input that did not change:
+//
+//    ParseTreeFile f = ParseTreeFile.open(fileName,src,parser);
+//    if (f==null)
+//    {
+//      ... parse 'src' building ParseTree 'tree' ...
+//      ParseTreeFile.write(tree,fileName);
+//    }
+//
+//  Only a complete tree is written: one from a parse that ended
+//  successfully (see ParseTree.complete).
+//  The file records a hash of the input text and the rule names;
+//  'open' returns null if the file does not exist, is not in the
+//  current format, was made from different text, or by a parser
+//  with different rules (whose numbers would not be valid for
+//  'parser'). The opened file is mapped
+//  into memory, and the nodes are read from it as requested,
+//  without converting the whole file. They have the same numbers
+//  as in the saved ParseTree.
+//
+//  Format (numbers in big-endian order):
+//
+//    int      MAGIC
+//    int      VERSION
+//    int      flags (HAS_NUM: values present)
+//    int      number of nodes n
+//    int      length of input text
+//    int      number of rule names r
+//    byte[32] SHA-256 hash of input text (chars as 2 bytes each)
+//    r times: short length, UTF-8 bytes of rule name
+//    padding to a multiple of 8 bytes
+//    int[n]   rule      (ParseTree.TERM for terminal)
+//    int[n]   start
+//    int[n]   end
+//    int[n]   first child
+//    int[n]   next sibling
+//    long[n]  value     (only if HAS_NUM)
+//
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+public class ParseTreeFile
+{
+  //-------------------------------------------------------------------
+  //  Format identification.
+  //-------------------------------------------------------------------
+  static final int MAGIC   = 0x4D505446;   // "MPTF"
+  static final int VERSION = 1;
+  static final int HAS_NUM = 1;
+  static final int HEADER  = 56;           // Bytes before rule names
+
+  static final Charset UTF8 = Charset.forName("UTF-8");
+
+  //-------------------------------------------------------------------
+  //  Views of the mapped file.
+  //-------------------------------------------------------------------
+  final Source source;
+  final String[] names;
+  final int size;
+  final IntBuffer rule;
+  final IntBuffer start;
+  final IntBuffer end;
+  final IntBuffer first;
+  final IntBuffer next;
+  final LongBuffer num;
+
+  //-------------------------------------------------------------------
+  //  Constructor; 'buf' positioned after the rule names.
+  //-------------------------------------------------------------------
+  private ParseTreeFile
+    (Source source, String[] names, int size, int flags, ByteBuffer buf)
+    {
+      this.source = source;
+      this.names = names;
+      this.size = size;
+      rule  = slice(buf,4*size).asIntBuffer();
+      start = slice(buf,4*size).asIntBuffer();
+      end   = slice(buf,4*size).asIntBuffer();
+      first = slice(buf,4*size).asIntBuffer();
+      next  = slice(buf,4*size).asIntBuffer();
+      num   = (flags & HAS_NUM)!=0? slice(buf,8*size).asLongBuffer() : null;
+    }
+
+
+  //=====================================================================
+  //
+  //  Access to nodes (as in ParseTree)
+  //
+  //=====================================================================
+
+  public int size()
+    { return size; }
+
+  public int root()
+    { return size>0? 0 : -1; }
+
+  public int rule(int n)
+    { return rule.get(n); }
+
+  public int start(int n)
+    { return start.get(n); }
+
+  public int end(int n)
+    { return end.get(n); }
+
+  public int firstChild(int n)
+    { return first.get(n); }
+
+  public int nextSibling(int n)
+    { return next.get(n); }
+
+  public boolean isTerm(int n)
+    { return rule.get(n)==ParseTree.TERM; }
+
+  public String name(int n)
+    { return isTerm(n)? "" : names[rule.get(n)]; }
+
+  public String text(int n)
+    { return source.at(start.get(n),end.get(n)); }
+
+  public long getLong(int n)
+    { return num==null? 0 : num.get(n); }
+
+  public double getDouble(int n)
+    { return Double.longBitsToDouble(getLong(n)); }
+
+
+  //=====================================================================
+  //
+  //  Write and open
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Write 'tree' to file 'fileName', replacing it if it exists.
+  //  Returns false after printing message if not successful,
+  //  or if 'tree' is not complete.
+  //-------------------------------------------------------------------
+  public static boolean write(ParseTree tree, String fileName)
+    {
+      if (!tree.complete())
+      {
+        System.err.println("No complete tree to write to file '" + fileName + "'.");
+        return false;
+      }
+      int n = tree.size();
+      int r = tree.parser.ruleNames.length;
+      byte[][] names = new byte[r][];
+      long len = HEADER;
+      for (int i=0; i<r; i++)
+      {
+        names[i] = tree.parser.ruleNames[i].getBytes(UTF8);
+        len += 2 + names[i].length;
+      }
+      len = (len+7) & ~7;
+      long body = 20L*n + (tree.num!=null? 8L*n : 0);
+      if (len+body>Integer.MAX_VALUE)
+      {
+        System.err.println("Tree too large for file '" + fileName + "'.");
+        return false;
+      }
+
+      try
+      {
+        RandomAccessFile f = new RandomAccessFile(fileName,"rw");
+        try
+        {
+          f.setLength(0);
+          FileChannel fc = f.getChannel();
+          ByteBuffer buf = fc.map(FileChannel.MapMode.READ_WRITE,0,len+body);
+          buf.putInt(MAGIC);
+          buf.putInt(VERSION);
+          buf.putInt(tree.num!=null? HAS_NUM : 0);
+          buf.putInt(n);
+          buf.putInt(tree.source.end());
+          buf.putInt(r);
+          buf.put(hash(tree.source));
+          for (byte[] b: names)
+          {
+            buf.putShort((short)b.length);
+            buf.put(b);
+          }
+          buf.position((int)len);
+          slice(buf,4*n).asIntBuffer().put(tree.rule,0,n);
+          slice(buf,4*n).asIntBuffer().put(tree.start,0,n);
+          slice(buf,4*n).asIntBuffer().put(tree.end,0,n);
+          slice(buf,4*n).asIntBuffer().put(tree.first,0,n);
+          slice(buf,4*n).asIntBuffer().put(tree.next,0,n);
+          if (tree.num!=null)
+            slice(buf,8*n).asLongBuffer().put(tree.num,0,n);
+        }
+        finally
+        { f.close(); }
+        return true;
+      }
+      catch (IOException e)
+      {
+        System.err.println("Error writing file '" + fileName + "' " + e.getMessage());
+        return false;
+      }
+    }
+
+  //-------------------------------------------------------------------
+  //  Open file 'fileName' made from text of 'src' by 'parser'.
+  //  Returns null if there is no such file, or it is not usable
+  //  for 'src' and 'parser'. Other errors are printed.
+  //-------------------------------------------------------------------
+  public static ParseTreeFile open(String fileName, Source src, ParserBase parser)
+    {
+      File file = new File(fileName);
+      if (!file.isFile()) return null;
+      try
+      {
+        RandomAccessFile f = new RandomAccessFile(file,"r");
+        try
+        {
+          FileChannel fc = f.getChannel();
+          if (fc.size()<HEADER || fc.size()>Integer.MAX_VALUE) return null;
+          ByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY,0,fc.size());
+          if (buf.getInt()!=MAGIC || buf.getInt()!=VERSION) return null;
+          int flags = buf.getInt();
+          int n = buf.getInt();
+          if (buf.getInt()!=src.end()) return null;
+          int r = buf.getInt();
+          if (r!=parser.ruleNames.length) return null;
+          byte[] h = new byte[32];
+          buf.get(h);
+          if (!Arrays.equals(h,hash(src))) return null;
+          String[] names = new String[r];
+          for (int i=0; i<r; i++)
+          {
+            byte[] b = new byte[buf.getShort()];
+            buf.get(b);
+            names[i] = new String(b,UTF8);
+            if (!names[i].equals(parser.ruleNames[i])) return null;
+          }
+          buf.position((buf.position()+7) & ~7);
+          long body = 20L*n + ((flags & HAS_NUM)!=0? 8L*n : 0);
+          if (buf.remaining()<body) return null;
+          return new ParseTreeFile(src,names,n,flags,buf);
+        }
+        finally
+        { f.close(); }        // The mapping remains valid
+      }
+      catch (IOException e)
+      {
+        System.err.println("Error reading file '" + fileName + "' " + e.getMessage());
+        return null;
+      }
+    }
+
+  //-------------------------------------------------------------------
+  //  SHA-256 hash of the text of 'src', with each char as two bytes.
+  //-------------------------------------------------------------------
+  public static byte[] hash(Source src)
+    {
+      MessageDigest md;
+      try
+      { md = MessageDigest.getInstance("SHA-256"); }
+      catch (NoSuchAlgorithmException e)
+      { throw new Error(e); }    // Required on every Java platform
+      int end = src.end();
+      byte[] b = new byte[2*8192];
+      for (int i=0; i<end; i+=8192)
+      {
+        String s = src.at(i,Math.min(end,i+8192));
+        for (int j=0; j<s.length(); j++)
+        {
+          char c = s.charAt(j);
+          b[2*j] = (byte)(c>>8);
+          b[2*j+1] = (byte)c;
+        }
+        md.update(b,0,2*s.length());
+      }
+      return md.digest();
+    }
+
+  //-------------------------------------------------------------------
+  //  Take next 'len' bytes of 'buf' as separate buffer.
+  //-------------------------------------------------------------------
+  private static ByteBuffer slice(ByteBuffer buf, int len)
+    {
+      ByteBuffer b = buf.slice();
+      b.limit(len);
+      buf.position(buf.position()+len);
+      return b;
+    }
+}
@@ -58,13 +58,60 @@
 //          successful and unsuccessful termination.
 //          Added code in 'accept' and 'acceptInner' to propagate
 //          deferred actions.
+//  Version 1.10
+//   261018 Terminals are no longer represented by Phrase objects
+//          while parsing: 'consume' registers only their start and end
+//          in the rhs of current Phrase. The Phrase is created
+//          if requested by 'rhs(i)'. 'rhsText' uses the registered
+//          positions directly.
+//   261018 Failure history identifies failed expressions by numbers
+//          in table 'expected' (see class Expected), supplied by the
+//          generated parser via 'setExpected'. Added versions of 'begin'
+//          and of terminal services that receive such numbers instead
+//          of building texts on each failure. The old versions are kept
+//          for parsers generated by earlier versions.
+//   261018 Added 'hwmOn' and 'init(src,diag)' to run parser without
+//          keeping failure history, for parsers generated with -F.
+//   261018 String terminals compared with input in place ('matches')
+//          instead of extracting a substring for each comparison.
+//   261018 Added terminal services testing membership in a character
+//          class or range represented by bitmap; used by generated
+//          parsers instead of searching the class string.
+//          Services for [a-z] read the input character only once.
+//   261018 'init' obtains the text from Source once as a String;
+//          terminal services and 'rhsText' access it directly instead
+//          of calling 'Source.at' through the interface.
+//   261018 Added explicit stack for parsers generated with option -I.
+//   261018 Added 'resetParser', used by ParserPool.
+//   261018 Input can be SourceStream, read as the parser proceeds.
+//          Terminal services ask for more input via 'has' when they
+//          reach 'endpos'. Added low-water mark and 'release' that
+//          lets the parser and SourceStream discard text and Phrases
+//          that will not be used again.
+//   261018 Added 'cut' and CutFailure. Backtracking to before
+//          low-water mark terminates the parse with CutFailure.
+//   261018 Each Phrase records in 'far' the end of text examined
+//          while parsing it, for incremental reparsing (see ParserMemo).
+//          The examined text is tracked by 'has' and collected
+//          in 'begin' and 'pop'.
+//   261018 Deferred actions are kept in one log for the parse ('acts').
+//          Accept leaves them in place instead of copying them
+//          to the parent; reject and accepted predicate truncate
+//          the log at the Phrase's mark.
+//   261018 Accept records in 'actEnd' where the Phrase's deferred
+//          actions end.
+//   261018 'pop' and 'consume' made package-private, to be overridden
+//          or used by ParserEvents.
+//   261018 Rules are identified by numbers. The generated parser supplies
+//          table of their names and diagnostic names via 'setRules',
+//          and begins a rule with 'beginRule(number)'; the Phrase
+//          records the number in 'ruleId'.
 //
 //=========================================================================
 
 package mouse.runtime;
 
 import mouse.runtime.Source;
-import java.util.Vector;
 
 
 //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
@@ -80,8 +127,15 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //  Input
   //-------------------------------------------------------------------
   Source source;                    // Source of text to parse
+  String text;                      // The text, obtained once from 'source'
+                                    // .. or null if 'source' is a stream
+  SourceStream stream;              // 'source' if it is a stream, else null
   int endpos;                       // Position after the end of text
+                                    // .. read so far if stream
   int pos;                          // Current position in the text
+  int lowWater;                     // Text before it was released
+  int far;                          // End of text examined so far
+                                    // .. for 'current' (see 'push')
 
   //-------------------------------------------------------------------
   //  Semantics (base)
@@ -98,6 +152,30 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   Phrase current = null;
 
+  //-------------------------------------------------------------------
+  //  Deferred actions of all Phrases.
+  //-------------------------------------------------------------------
+  final Phrase.ActLog acts = new Phrase.ActLog();
+
+  //-------------------------------------------------------------------
+  //  Texts for failure messages.
+  //-------------------------------------------------------------------
+  Expected expected = new Expected(null);
+
+  //-------------------------------------------------------------------
+  //  Names of rules and numbers of their diagnostic names
+  //  in 'expected', indexed by rule number.
+  //-------------------------------------------------------------------
+  String[] ruleNames = new String[0];
+  int[] ruleDiags = new int[0];
+
+  //-------------------------------------------------------------------
+  //  Keep failure history?
+  //  Parser generated with option -F does not keep it on the first
+  //  attempt, and repeats the attempt with history kept if it fails.
+  //-------------------------------------------------------------------
+  boolean hwmOn = true;
+
   //-------------------------------------------------------------------
   //  Constructor
   //-------------------------------------------------------------------
@@ -111,10 +189,78 @@ public class ParserBase implements mouse.runtime.CurrentRule
     {
       source = src;
       pos = 0;
-      endpos = source.end();
-      current = new Phrase("","",0,source); // Dummy bottom of parse stack
+      lowWater = 0;
+      if (src instanceof SourceStream)
+      {
+        stream = (SourceStream)src;
+        text = null;
+        endpos = stream.available(0);
+      }
+      else
+      {
+        stream = null;
+        endpos = source.end();
+        text = source.at(0,endpos);
+      }
+      current = new Phrase("","",0,source,expected); // Dummy bottom of parse stack
+      acts.truncate(0);
+      current.log = acts;
+      far = 0;
+      hwmOn = true;
+      frameTop = 0;
     }
 
+  //-------------------------------------------------------------------
+  //  Drop references to the input and to the Phrases of last parse,
+  //  so that they can be garbage-collected while the parser is idle,
+  //  for example, in ParserPool. The parser can then be used again.
+  //-------------------------------------------------------------------
+  public void resetParser()
+    {
+      source = null;
+      text = null;
+      stream = null;
+      current = null;
+      pos = 0;
+      endpos = 0;
+      lowWater = 0;
+      far = 0;
+      acts.truncate(0);
+      frameTop = 0;
+    }
+
+  //-------------------------------------------------------------------
+  //  Initialize parsing, specifying if failure history is to be kept.
+  //-------------------------------------------------------------------
+  protected void init(Source src, boolean diag)
+    {
+      init(src);
+      hwmOn = diag;
+    }
+
+  //-------------------------------------------------------------------
+  //  Set texts for failure messages.
+  //  Text number i is identified in parsing procedures by i.
+  //-------------------------------------------------------------------
+  protected void setExpected(final String[] list)
+    { expected = new Expected(list); }
+
+  //-------------------------------------------------------------------
+  //  Set table of rules. Rule number i has name 'names[i]'
+  //  and diagnostic name given by number 'diags[i]' in 'expected'.
+  //-------------------------------------------------------------------
+  protected void setRules(final String[] names, final int[] diags)
+    {
+      ruleNames = names;
+      ruleDiags = diags;
+    }
+
+  //-------------------------------------------------------------------
+  //  Name of rule number 'rule'.
+  //-------------------------------------------------------------------
+  public String ruleName(int rule)
+    { return ruleNames[rule]; }
+
   //-------------------------------------------------------------------
   //  Implementation of Parser interface CurrentRule
   //-------------------------------------------------------------------
@@ -122,17 +268,72 @@ public class ParserBase implements mouse.runtime.CurrentRule
     { return current; }
 
   public Phrase rhs(int i)
-    { return current.rhs.elementAt(i); }
+    { return current.rhsAt(i); }
 
   public int rhsSize()
-    { return current.rhs.size(); }
+    { return current.rhsSize; }
 
   public String rhsText(int i,int j)
     {
       if (j<=i) return "";
-      return source.at(rhs(i).start,rhs(j-1).end);
+      if (i<0 || j>current.rhsSize)
+        throw new ArrayIndexOutOfBoundsException(i<0? i : j-1);
+      int p = current.rhsPos[2*i];
+      int q = current.rhsPos[2*j-1];
+      return text!=null? text.substring(p,q) : source.at(p,q);
+    }
+
+  //-------------------------------------------------------------------
+  //  Release text before position 'p' (at most current position).
+  //  This is a promise that neither the parser nor semantic actions
+  //  will access that text or Phrases that end there. It is the user's
+  //  responsibility to call it only where the grammar cannot backtrack
+  //  to before 'p', for example, in the semantic action of a rule
+  //  recognizing a complete record of input. Then:
+  //  - SourceStream can discard the text.
+  //  - Items of rhs that end at or before 'p' are removed from
+  //    the Phrases being processed, so semantic actions of the
+  //    enclosing rules do not see them in 'rhs' and 'rhsSize'.
+  //    Deferred actions already propagated from them are kept.
+  //  - Memoizing parser drops saved results starting before 'p'.
+  //  Accessing released text throws Error.
+  //  The position 'p' becomes the low-water mark; it never decreases.
+  //-------------------------------------------------------------------
+  public void release(int p)
+    {
+      if (p>pos) p = pos;
+      raiseLowWater(p);
+      for (Phrase ph=current; ph!=null; ph=ph.parent)
+        ph.rhsDrop(p);
+      if (stream!=null) stream.release(p);
+    }
+
+  //-------------------------------------------------------------------
+  //  Low-water mark.
+  //-------------------------------------------------------------------
+  public int lowWater()
+    { return lowWater; }
+
+  //-------------------------------------------------------------------
+  //  Raise low-water mark to 'p'.
+  //-------------------------------------------------------------------
+  void raiseLowWater(int p)
+    {
+      if (p>lowWater) lowWater = p;
     }
 
+  //-------------------------------------------------------------------
+  //  Thrown when parse fails after a cut.
+  //  Caught by 'parse' of the generated parser.
+  //-------------------------------------------------------------------
+  protected static class CutFailure extends RuntimeException
+  {
+    private static final long serialVersionUID = 1L;
+
+    CutFailure()
+      { super("Parse failed after cut"); }
+  }
+
   //-------------------------------------------------------------------
   //  Set trace
   //-------------------------------------------------------------------
@@ -163,16 +364,34 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected void begin(final String name)
     {
-      Phrase p = new Phrase(name,name,pos,source);
-      p.parent = current;
-      current = p;
+      push(new Phrase(name,name,pos,source,expected));
     }
 
   protected void begin(final String name,final String diag)
     {
-      Phrase p = new Phrase(name,diag,pos,source);
-      p.parent = current;
-      current = p;
+      push(new Phrase(name,diag,pos,source,expected));
+    }
+
+  //-------------------------------------------------------------------
+  //  Version with diagnostic name given by its number 'diag'.
+  //-------------------------------------------------------------------
+  protected void begin(final String name,int diag)
+    {
+      Phrase p = new Phrase(name,expected.text(diag),pos,source,expected);
+      p.diagId = diag;
+      push(p);
+    }
+
+  //-------------------------------------------------------------------
+  //  Version with rule given by its number.
+  //-------------------------------------------------------------------
+  protected void beginRule(int rule)
+    {
+      int diag = ruleDiags[rule];
+      Phrase p = new Phrase(ruleNames[rule],expected.text(diag),pos,source,expected);
+      p.diagId = diag;
+      p.ruleId = rule;
+      push(p);
     }
 
   //-------------------------------------------------------------------
@@ -183,12 +402,13 @@ public class ParserBase implements mouse.runtime.CurrentRule
       Phrase p = pop();                // Pop the finishing Phrase
                                        // Finalize p:
       p.success = true;                //   Indicate p successful
-      p.rhs = null;                    //   Discard rhs of p
+      p.rhsClear();                    //   Discard rhs of p
+      p.actEnd = acts.count;           //   End of its deferred actions
                                        // Update parent Phrase:
       current.end = pos;               //   End of text
-      current.rhs.add(p);              //   Add p to the rhs
-      current.hwmUpdFrom(p);           //   Update failure history
-      current.defAct.addAll(p.defAct); //   Propagate deferred actions
+      current.rhsAdd(p);               //   Add p to the rhs
+      if (hwmOn)
+        current.hwmUpdFrom(p);         //   Update failure history
       return true;
     }
 
@@ -202,9 +422,9 @@ public class ParserBase implements mouse.runtime.CurrentRule
       p.success = true;                //   Indicate p successful
                                        // Update parent Phrase:
       current.end = pos;               //   End of text
-      current.rhs.addAll(p.rhs);       //   Append p's rhs to the rhs
-      current.hwmUpdFrom(p);           //   Update failure history
-      current.defAct.addAll(p.defAct); //   Propagate deferred actions
+      current.rhsAddAll(p);            //   Append p's rhs to the rhs
+      if (hwmOn)
+        current.hwmUpdFrom(p);         //   Update failure history
       return true;
     }
 
@@ -218,8 +438,9 @@ public class ParserBase implements mouse.runtime.CurrentRule
                                        // Finalize p:
       p.end = pos;                     //   Reset end of text
       p.success = true;                //   Indicate p successful
-      p.rhs = null;                    //   Discard rhs of p
+      p.rhsClear();                    //   Discard rhs of p
       p.hwmClear();                    //   Remove failure history
+      acts.truncate(p.actMark);        //   Discard deferred actions
                                        // Update parent Phrase:
       current.end = pos;               //   End of text
       return true;
@@ -235,12 +456,15 @@ public class ParserBase implements mouse.runtime.CurrentRule
                                        // Finalize p:
       p.end = pos;                     //   Reset end of text
       p.success = false;               //   Indicate p failed
-      p.rhs = null;                    //   Discard rhs of p
-      if (p.hwm<=pos)                  //   If hwm reached or passed..
-        p.hwmSet(p.diag,p.start);      //   ..register failure of p
+      p.rhsClear();                    //   Discard rhs of p
+      if (hwmOn && p.hwm<=pos)         //   If hwm reached or passed..
+        p.hwmSet(p.diagId(),p.start);  //   ..register failure of p
+      acts.truncate(p.actMark);        //   Discard deferred actions
                                        // Update parent Phrase:
       current.end = pos;               //   End of text
-      current.hwmUpdFrom(p);           //   Update failure history
+      if (hwmOn)
+        current.hwmUpdFrom(p);         //   Update failure history
+      if (pos<lowWater) cutFail();     // Backtracked over cut?
       return false;
     }
 
@@ -254,10 +478,13 @@ public class ParserBase implements mouse.runtime.CurrentRule
                                        // Finalize p:
       p.end = pos;                     //   Reset end of text
       p.success = false;               //   Indicate p failed
-      p.rhs = null;                    //   Discard rhs of p
+      p.rhsClear();                    //   Discard rhs of p
+      acts.truncate(p.actMark);        //   Discard deferred actions
                                        // Update parent Phrase:
       current.end = pos;               //   End of text
-      current.hwmUpdFrom(p);           //   Update failure history
+      if (hwmOn)
+        current.hwmUpdFrom(p);         //   Update failure history
+      if (pos<lowWater) cutFail();     // Backtracked over cut?
       return false;
     }
 
@@ -271,21 +498,38 @@ public class ParserBase implements mouse.runtime.CurrentRule
                                        // Finalize p:
       p.end = pos;                     //   Reset end of text
       p.success = false;               //   Indicate p failed
-      p.rhs = null;                    //   Discard rhs of p
-      p.hwmSet(p.diag,pos);            //   Register 'xxx (not) expected'
+      p.rhsClear();                    //   Discard rhs of p
+      if (hwmOn)
+        p.hwmSet(p.diagId(),pos);      //   Register 'xxx (not) expected'
+      acts.truncate(p.actMark);        //   Discard deferred actions
                                        // Update parent Phrase:
       current.end = pos;               //   End of text
-      current.hwmUpdFrom(p);           //   Update failure history
+      if (hwmOn)
+        current.hwmUpdFrom(p);         //   Update failure history
+      if (pos<lowWater) cutFail();     // Backtracked over cut?
       return false;
     }
 
 
+  //-------------------------------------------------------------------
+  //  Execute cut: commit to everything parsed so far.
+  //  The parse must not backtrack to before the current position;
+  //  attempt to do it terminates the parse by CutFailure.
+  //  Memoizing parser drops saved results starting before it.
+  //-------------------------------------------------------------------
+  protected boolean cut()
+    {
+      raiseLowWater(pos);
+      return true;
+    }
+
+
   //-------------------------------------------------------------------
   //  Execute expression 'c'
   //-------------------------------------------------------------------
   protected boolean next(char ch)
     {
-      if (pos<endpos && source.at(pos)==ch) return consume(1);
+      if (has(1) && charAt(pos)==ch) return consume(1);
       else return fail("'" + ch + "'");
     }
 
@@ -294,7 +538,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean nextNot(char ch)
     {
-      if (pos<endpos && source.at(pos)!=ch) return consume(1);
+      if (has(1) && charAt(pos)!=ch) return consume(1);
       else return fail("not '" + ch + "'");
     }
 
@@ -303,7 +547,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean ahead(char ch)
     {
-      if (pos<endpos && source.at(pos)==ch) return true;
+      if (has(1) && charAt(pos)==ch) return true;
       else return fail("'" + ch + "'");
     }
 
@@ -315,7 +559,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean aheadNot(char ch)
     {
-      if (pos<endpos && source.at(pos)==ch) return fail("not '" + ch + "'");
+      if (has(1) && charAt(pos)==ch) return fail("not '" + ch + "'");
       else return true;
     }
 
@@ -326,7 +570,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   protected boolean next(String s)
     {
       int lg = s.length();
-      if (pos+lg<=endpos && source.at(pos,pos+lg).equals(s)) return consume(lg);
+      if (has(lg) && matches(s)) return consume(lg);
       else return fail("'" + s + "'");
     }
 
@@ -336,7 +580,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   protected boolean ahead(String s)
     {
       int lg = s.length();
-      if (pos+lg<=endpos && source.at(pos,pos+lg).equals(s)) return true;
+      if (has(lg) && matches(s)) return true;
       else return fail("'" + s + "'");
     }
 
@@ -346,7 +590,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   protected boolean aheadNot(String s)
     {
       int lg = s.length();
-      if (pos+lg<=endpos && source.at(pos,pos+lg).equals(s)) return fail("not '" + s + "'");
+      if (has(lg) && matches(s)) return fail("not '" + s + "'");
       else return true;
     }
 
@@ -356,7 +600,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean nextIn(String s)
     {
-      if (pos<endpos && s.indexOf(source.at(pos))>=0) return consume(1);
+      if (has(1) && s.indexOf(charAt(pos))>=0) return consume(1);
       else return fail("[" + s + "]");
     }
 
@@ -365,7 +609,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean nextNotIn(String s)
     {
-      if (pos<endpos && s.indexOf(source.at(pos))<0) return consume(1);
+      if (has(1) && s.indexOf(charAt(pos))<0) return consume(1);
       else return fail("not [" + s + "]");
     }
 
@@ -374,7 +618,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean aheadIn(String s)
     {
-      if (pos<endpos && s.indexOf(source.at(pos))>=0) return true;
+      if (has(1) && s.indexOf(charAt(pos))>=0) return true;
       else return fail("[" + s + "]");
     }
 
@@ -386,7 +630,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean aheadNotIn(String s)
     {
-      if (pos<endpos && s.indexOf(source.at(pos))>=0) return fail("not [" + s + "]");
+      if (has(1) && s.indexOf(charAt(pos))>=0) return fail("not [" + s + "]");
       else return true;
     }
 
@@ -396,7 +640,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean nextIn(char a, char z)
     {
-      if (pos<endpos && source.at(pos)>=a && source.at(pos)<=z)
+      if (has(1) && inRange(a,z))
         return consume(1);
       else return fail("[" + a + "-" + z + "]");
     }
@@ -406,7 +650,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean aheadIn(char a, char z)
     {
-      if (pos<endpos && source.at(pos)>=a && source.at(pos)<=z)
+      if (has(1) && inRange(a,z))
         return true;
       else return fail("[" + a + "-" + z + "]");
     }
@@ -416,7 +660,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean aheadNotIn(char a, char z)
     {
-      if (pos<endpos && source.at(pos)>=a && source.at(pos)<=z)
+      if (has(1) && inRange(a,z))
         return fail("not [" + a + "-" + z + "]");
       else return true;
     }
@@ -427,7 +671,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean next()
     {
-      if (pos<endpos) return consume(1);
+      if (has(1)) return consume(1);
       else return fail("any character");
     }
 
@@ -436,7 +680,7 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean ahead()
     {
-      if (pos<endpos) return true;
+      if (has(1)) return true;
       else return fail("any character");
     }
 
@@ -445,43 +689,438 @@ public class ParserBase implements mouse.runtime.CurrentRule
   //-------------------------------------------------------------------
   protected boolean aheadNot()
     {
-      if (pos<endpos) return fail("end of text");
+      if (has(1)) return fail("end of text");
       else return true;
     }
 
 
+  //=====================================================================
+  //
+  //  Terminal services with expected text given by its number 'e'
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Execute expression 'c'
+  //-------------------------------------------------------------------
+  protected boolean next(char ch,int e)
+    {
+      if (has(1) && charAt(pos)==ch) return consume(1);
+      else return fail(e);
+    }
+
   //-------------------------------------------------------------------
-  //  Pop Phrase from compile stack
+  //  Execute expression ^'c'
   //-------------------------------------------------------------------
-  private Phrase pop()
+  protected boolean nextNot(char ch,int e)
+    {
+      if (has(1) && charAt(pos)!=ch) return consume(1);
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &'c', !^'c'
+  //-------------------------------------------------------------------
+  protected boolean ahead(char ch,int e)
+    {
+      if (has(1) && charAt(pos)==ch) return true;
+      else return fail(e);
+    }
+
+  protected boolean aheadNotNot(char ch,int e)
+    { return ahead(ch,e); }
+
+  //-------------------------------------------------------------------
+  //  Execute expression !'c', &^'c'
+  //-------------------------------------------------------------------
+  protected boolean aheadNot(char ch,int e)
+    {
+      if (has(1) && charAt(pos)==ch) return fail(e);
+      else return true;
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression "s"
+  //-------------------------------------------------------------------
+  protected boolean next(String s,int e)
+    {
+      int lg = s.length();
+      if (has(lg) && matches(s)) return consume(lg);
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &"s"
+  //-------------------------------------------------------------------
+  protected boolean ahead(String s,int e)
+    {
+      int lg = s.length();
+      if (has(lg) && matches(s)) return true;
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression !"s"
+  //-------------------------------------------------------------------
+  protected boolean aheadNot(String s,int e)
+    {
+      int lg = s.length();
+      if (has(lg) && matches(s)) return fail(e);
+      else return true;
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression [s]
+  //-------------------------------------------------------------------
+  protected boolean nextIn(String s,int e)
+    {
+      if (has(1) && s.indexOf(charAt(pos))>=0) return consume(1);
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ^[s]
+  //-------------------------------------------------------------------
+  protected boolean nextNotIn(String s,int e)
+    {
+      if (has(1) && s.indexOf(charAt(pos))<0) return consume(1);
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &[s], !^[s]
+  //-------------------------------------------------------------------
+  protected boolean aheadIn(String s,int e)
+    {
+      if (has(1) && s.indexOf(charAt(pos))>=0) return true;
+      else return fail(e);
+    }
+
+  protected boolean aheadNotNotIn(String s,int e)
+    { return aheadIn(s,e); }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ![s], &^[s]
+  //-------------------------------------------------------------------
+  protected boolean aheadNotIn(String s,int e)
+    {
+      if (has(1) && s.indexOf(charAt(pos))>=0) return fail(e);
+      else return true;
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression [a-z]
+  //-------------------------------------------------------------------
+  protected boolean nextIn(char a, char z, int e)
+    {
+      if (has(1) && inRange(a,z))
+        return consume(1);
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &[a-z]
+  //-------------------------------------------------------------------
+  protected boolean aheadIn(char a, char z, int e)
+    {
+      if (has(1) && inRange(a,z))
+        return true;
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ![a-z]
+  //-------------------------------------------------------------------
+  protected boolean aheadNotIn(char a, char z, int e)
+    {
+      if (has(1) && inRange(a,z))
+        return fail(e);
+      else return true;
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression [s] or [a-z]
+  //  with characters given by bitmap 'set' (see 'inSet').
+  //-------------------------------------------------------------------
+  protected boolean nextIn(long[] set,int e)
+    {
+      if (has(1) && inSet(set,charAt(pos))) return consume(1);
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ^[s]
+  //  with characters given by bitmap 'set'.
+  //-------------------------------------------------------------------
+  protected boolean nextNotIn(long[] set,int e)
+    {
+      if (has(1) && !inSet(set,charAt(pos))) return consume(1);
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &[s], !^[s], &[a-z]
+  //  with characters given by bitmap 'set'.
+  //-------------------------------------------------------------------
+  protected boolean aheadIn(long[] set,int e)
+    {
+      if (has(1) && inSet(set,charAt(pos))) return true;
+      else return fail(e);
+    }
+
+  protected boolean aheadNotNotIn(long[] set,int e)
+    { return aheadIn(set,e); }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ![s], &^[s], ![a-z]
+  //  with characters given by bitmap 'set'.
+  //-------------------------------------------------------------------
+  protected boolean aheadNotIn(long[] set,int e)
+    {
+      if (has(1) && inSet(set,charAt(pos))) return fail(e);
+      else return true;
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression _
+  //-------------------------------------------------------------------
+  protected boolean next(int e)
+    {
+      if (has(1)) return consume(1);
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &_
+  //-------------------------------------------------------------------
+  protected boolean ahead(int e)
+    {
+      if (has(1)) return true;
+      else return fail(e);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression !_
+  //-------------------------------------------------------------------
+  protected boolean aheadNot(int e)
+    {
+      if (has(1)) return fail(e);
+      else return true;
+    }
+
+
+  //=====================================================================
+  //
+  //  Explicit stack for iterative parsers
+  //
+  //---------------------------------------------------------------------
+  //
+  //  A parser generated with option -I does not call its parsing
+  //  procedures directly. Instead, the call is registered here
+  //  together with the state in which the calling procedure is to be
+  //  resumed, and the procedures are run by the generated method 'run'.
+  //  The stack consists of frames, each made of two integers:
+  //  procedure number and the state in which to (re)start it.
+  //  It grows as needed, so the depth of calls is limited only
+  //  by the available memory.
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  The stack and its height (twice the number of frames).
+  //-------------------------------------------------------------------
+  private int[] frames = new int[64];
+  private int frameTop = 0;
+
+  //-------------------------------------------------------------------
+  //  Result of the procedure that returned last.
+  //-------------------------------------------------------------------
+  protected boolean returned;
+
+  //-------------------------------------------------------------------
+  //  Push frame for procedure 'proc' to be started in state 0.
+  //  Return height of the stack before that.
+  //-------------------------------------------------------------------
+  protected int enter(int proc)
+    {
+      int base = frameTop;
+      if (frameTop==frames.length)
+      {
+        int[] f = new int[2*frames.length];
+        System.arraycopy(frames,0,f,0,frameTop);
+        frames = f;
+      }
+      frames[frameTop] = proc;
+      frames[frameTop+1] = 0;
+      frameTop += 2;
+      return base;
+    }
+
+  //-------------------------------------------------------------------
+  //  Call procedure 'proc' from the procedure on top of the stack,
+  //  that is to be resumed in state 'at'.
+  //-------------------------------------------------------------------
+  protected void call(int proc, int at)
+    {
+      frames[frameTop-1] = at;
+      enter(proc);
+    }
+
+  //-------------------------------------------------------------------
+  //  Return from procedure on top of the stack with 'result'.
+  //-------------------------------------------------------------------
+  protected void ret(boolean result)
+    {
+      returned = result;
+      frameTop -= 2;
+    }
+
+  //-------------------------------------------------------------------
+  //  Height of the stack.
+  //-------------------------------------------------------------------
+  protected int depth()
+    { return frameTop; }
+
+  //-------------------------------------------------------------------
+  //  Procedure on top of the stack and the state to start it in.
+  //-------------------------------------------------------------------
+  protected int frameProc()
+    { return frames[frameTop-2]; }
+
+  protected int frameAt()
+    { return frames[frameTop-1]; }
+
+
+  //=====================================================================
+  //
+  //  Private methods
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Are there n characters at current position?
+  //  If the input is a stream, reads more of it if needed.
+  //  Registers the n characters as examined, even if some are missing:
+  //  the result may change if text is added there.
+  //-------------------------------------------------------------------
+  private boolean has(int n)
+    {
+      if (pos+n>far) far = pos+n;
+      if (pos+n<=endpos) return true;
+      if (stream==null) return false;
+      endpos = stream.available(pos+n);
+      return pos+n<=endpos;
+    }
+
+  //-------------------------------------------------------------------
+  //  Character at position p (which must be available).
+  //-------------------------------------------------------------------
+  private char charAt(int p)
+    { return text!=null? text.charAt(p) : stream.at(p); }
+
+  //-------------------------------------------------------------------
+  //  Does text at current position start with s
+  //  (whose characters must be available)?
+  //-------------------------------------------------------------------
+  private boolean matches(final String s)
+    { return text!=null? text.startsWith(s,pos) : stream.matches(pos,s); }
+
+  //-------------------------------------------------------------------
+  //  Is character at current position in the range a through z?
+  //-------------------------------------------------------------------
+  private boolean inRange(char a, char z)
+    {
+      char c = charAt(pos);
+      return c>=a && c<=z;
+    }
+
+  //-------------------------------------------------------------------
+  //  Is character c in the set represented by bitmap 'set'?
+  //  Bit number c%64 of set[c/64] is 1 for each character c
+  //  in the set. Characters beyond the end of 'set' are not in it.
+  //  The bitmaps are generated as constants in the parser.
+  //-------------------------------------------------------------------
+  private static boolean inSet(long[] set, char c)
+    {
+      int w = c>>6;
+      return w<set.length && (set[w] & (1L<<c))!=0;
+    }
+
+  //-------------------------------------------------------------------
+  //  Push Phrase on compile stack.
+  //  Its deferred actions will be added to 'acts' after 'actMark'.
+  //  While 'p' is on the stack, 'p.far' holds the end of text examined
+  //  for its parent, and 'far' is that for 'p'. The text examined
+  //  for 'p' is considered to include its first character,
+  //  so that 'far' is always greater than 'start'.
+  //-------------------------------------------------------------------
+  private void push(Phrase p)
+    {
+      p.parent = current;
+      current = p;
+      p.far = far;
+      far = pos+1;
+      p.log = acts;
+      p.actMark = acts.count;
+      p.actEnd = -1;
+    }
+
+  //-------------------------------------------------------------------
+  //  Pop Phrase from compile stack.
+  //  The text examined for the parent includes that examined for 'p'.
+  //-------------------------------------------------------------------
+  Phrase pop()
     {
       Phrase p = current;
       current = p.parent;
       p.parent = null;
+      int f = p.far;
+      p.far = far;
+      if (f>far) far = f;
       return p;
     }
 
   //-------------------------------------------------------------------
   //  Consume terminal
+  //  (Phrase for the terminal is created only if requested.)
   //-------------------------------------------------------------------
-  private boolean consume(int n)
+  boolean consume(int n)
     {
-      Phrase p = new Phrase("","",pos,source);
+      current.rhsAddTerm(pos,pos+n);
       pos += n;
-      p.end = pos;
-      current.rhs.add(p);
       current.end = pos;
       return true;
     }
 
+  //-------------------------------------------------------------------
+  //  Terminate parse that failed after cut.
+  //  Pop all Phrases from the stack, collecting their failure
+  //  history in the bottom Phrase for the error message.
+  //-------------------------------------------------------------------
+  void cutFail()
+    {
+      while (current.parent!=null)
+      {
+        Phrase p = pop();
+        if (hwmOn) current.hwmUpdFrom(p);
+        acts.truncate(p.actMark);
+      }
+      throw new CutFailure();
+    }
+
   //-------------------------------------------------------------------
   //  Fail
   //-------------------------------------------------------------------
-  private boolean fail(String msg)
+  private boolean fail(int e)
     {
-      current.hwmUpd(msg,pos);
+      if (hwmOn) current.hwmUpd(e,pos);
       return false;
     }
+
+  private boolean fail(String msg)
+    { return fail(expected.id(msg)); }
 }
 
 
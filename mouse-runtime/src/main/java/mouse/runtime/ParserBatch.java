@@ -0,0 +1,174 @@
+//=========================================================================
+//
+//  Part of PEG parser generator Mouse.
+//
+//  Copyright (C) 2026 by Roman R. Redziejowski (www.romanredz.se).
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//-------------------------------------------------------------------------
+//
+//  Change log
+//   261018 Created for version 1.10.
+//
+//=========================================================================
+
+package mouse.runtime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+//
+//  ParserBatch
+//
+//-------------------------------------------------------------------------
+//
+//  Parse a collection of inputs using several threads.
+//
+//  Each input is processed by a Task that receives a parser instance
+//  for exclusive use while the Task runs. The Task typically creates
+//  Source for the input, calls 'parse' of the parser, and extracts
+//  the result from the parser or its semantics. The parsers are taken
+//  from a ParserPool with one instance per thread, so they are created
+//  once per thread and reused for subsequent inputs.
+//
+//  Use:
+//
+//    ParserBatch<MyParser> batch = new ParserBatch<MyParser>(factory,8);
+//    List<Boolean> ok = batch.run(fileNames,
+//      new ParserBatch.Task<MyParser,String,Boolean>()
+//      {
+//        public Boolean run(MyParser parser, String name)
+//          { return parser.parse(new SourceFile(name)); }
+//      });
+//    batch.shutdown();
+//
+//  The results are returned in the order of inputs. The results
+//  must not refer to the parser, its semantics, or its Phrases,
+//  as these are reused for other inputs. Anything the Task prints
+//  (and anything printed by the parser) appears in System.out
+//  in unpredictable order.
+//
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+public class ParserBatch<P extends ParserBase>
+{
+  //=====================================================================
+  //
+  //  Task to process one input of type T giving result of type R.
+  //
+  //=====================================================================
+  public interface Task<P,T,R>
+  {
+    R run(P parser, T input) throws Exception;
+  }
+
+  //=====================================================================
+  //
+  //  Data
+  //
+  //=====================================================================
+  private final ParserPool<P> pool;
+  private final ExecutorService executor;
+
+  //=====================================================================
+  //
+  //  Constructor.
+  //  Use 'threads' threads with parsers created by 'factory'.
+  //
+  //=====================================================================
+  public ParserBatch(ParserPool.Factory<P> factory, int threads)
+    {
+      pool = new ParserPool<P>(factory,threads);
+      executor = Executors.newFixedThreadPool(threads);
+    }
+
+  //=====================================================================
+  //
+  //  Submit 'task' for each of 'inputs'.
+  //  Return list of Futures for the results, in the order of inputs.
+  //  Use it to process results while other inputs are being parsed.
+  //
+  //=====================================================================
+  public <T,R> List<Future<R>> submit
+    (Collection<? extends T> inputs, final Task<P,T,R> task)
+    {
+      List<Future<R>> results = new ArrayList<Future<R>>(inputs.size());
+      for (final T input: inputs)
+        results.add(executor.submit
+          (new Callable<R>()
+            {
+              public R call() throws Exception
+                {
+                  P parser = pool.acquire();
+                  try
+                  { return task.run(parser,input); }
+                  finally
+                  { pool.release(parser); }
+                }
+            }));
+      return results;
+    }
+
+  //=====================================================================
+  //
+  //  Run 'task' for each of 'inputs' and wait until all are done.
+  //  Return the results in the order of inputs.
+  //  An exception thrown by a task is reported as ExecutionException
+  //  after all tasks are finished.
+  //
+  //=====================================================================
+  public <T,R> List<R> run(Collection<? extends T> inputs, final Task<P,T,R> task)
+    throws InterruptedException, ExecutionException
+    {
+      List<Future<R>> futures = submit(inputs,task);
+      List<R> results = new ArrayList<R>(futures.size());
+      ExecutionException failure = null;
+      for (Future<R> f: futures)
+      {
+        try
+        { results.add(f.get()); }
+        catch (ExecutionException e)
+        {
+          if (failure==null) failure = e;
+          results.add(null);
+        }
+      }
+      if (failure!=null) throw failure;
+      return results;
+    }
+
+  //=====================================================================
+  //
+  //  Number of parsers created so far.
+  //
+  //=====================================================================
+  public int parsers()
+    { return pool.created(); }
+
+  //=====================================================================
+  //
+  //  Stop the threads after all submitted tasks are finished.
+  //
+  //=====================================================================
+  public void shutdown()
+    { executor.shutdown(); }
+}
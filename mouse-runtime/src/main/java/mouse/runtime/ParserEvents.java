@@ -0,0 +1,388 @@
+//=========================================================================
+//
+//  Part of PEG parser generator Mouse.
+//
+//  Copyright (C) 2026 by Roman R. Redziejowski (www.romanredz.se).
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//-------------------------------------------------------------------------
+//
+//  Change log
+//   261018 Created for version 1.10.
+//   261018 Added 'setMergeTokens', used by ParseTree.
+//   261018 Rule names moved to ParserBase; 'beginRule' receives
+//          only the rule number.
+//   261018 Records the number of the last parse that succeeded
+//          ('succeeded'), to let ParseTree tell a complete tree.
+//
+//=========================================================================
+
+package mouse.runtime;
+
+
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+//
+//  ParserEvents
+//
+//-------------------------------------------------------------------------
+//
+//  Base for parsers generated with option -E. Instead of building
+//  the tree of Phrases and calling semantic actions, the parser reports
+//  the parse to a Listener as a stream of events:
+//
+//    startRule(rule,start)      rule started at 'start',
+//    endRule(rule,start,end)    rule recognized text [start,end),
+//    token(start,end)           terminals consumed in [start,end).
+//
+//  Rules are identified by their numbers; 'ruleName' gives the name.
+//  Consecutive terminals consumed by one rule or inner expression
+//  are reported as one token, unless disabled by 'setMergeTokens'.
+//  Events of failed rules and of predicates are never reported.
+//
+//  Only the Phrases of the expressions being processed are kept.
+//  Events are buffered until they cannot be undone by backtracking,
+//  and passed to the Listener at these commit points:
+//  - at cut ('#') or 'release', the events not belonging to an
+//    expression that started at or after the low-water mark;
+//  - on successful end of parse, all remaining events.
+//  With cuts in the grammar, the memory used is thus proportional
+//  to the nesting depth and to the distance between cuts, rather than
+//  to the size of input. SourceStream input is released up to
+//  the low-water mark after the events have been passed.
+//  If parse fails after cut, events passed before remain valid
+//  for the input up to the low-water mark.
+//
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+public class ParserEvents extends ParserBase
+{
+  //=====================================================================
+  //
+  //  Listener
+  //
+  //=====================================================================
+
+  public interface Listener
+  {
+    void startRule(int rule, int start);
+    void endRule(int rule, int start, int end);
+    void token(int start, int end);
+  }
+
+  //-------------------------------------------------------------------
+  //  Listener receiving the events.
+  //-------------------------------------------------------------------
+  Listener listener;
+
+  //-------------------------------------------------------------------
+  //  Report consecutive terminals as one token?
+  //-------------------------------------------------------------------
+  boolean mergeTokens = true;
+
+  //-------------------------------------------------------------------
+  //  Buffered events, three ints each: code, start, end.
+  //  Code is 2*rule for startRule, 2*rule+1 for endRule,
+  //  and TOKEN for token.
+  //-------------------------------------------------------------------
+  static final int TOKEN = -1;
+  int[] ev = new int[3*64];
+  int evCount = 0;                  // Number of ints used in 'ev'
+
+  //-------------------------------------------------------------------
+  //  Expressions being processed, parallel to the Phrase stack,
+  //  three ints each: rule number (-1 for inner expression),
+  //  start position, and 'evCount' at the start.
+  //-------------------------------------------------------------------
+  int[] stk = new int[3*64];
+  int stkTop = 0;                   // Number of ints used in 'stk'
+
+  //-------------------------------------------------------------------
+  //  Number of parses started, to let ParseTree recognize a new one.
+  //-------------------------------------------------------------------
+  int parses = 0;
+
+  //-------------------------------------------------------------------
+  //  Number of the last parse that succeeded, or 0 if none.
+  //-------------------------------------------------------------------
+  int succeeded = 0;
+
+  //-------------------------------------------------------------------
+  //  Constructor
+  //-------------------------------------------------------------------
+  protected ParserEvents()
+    {}
+
+  //-------------------------------------------------------------------
+  //  Set Listener.
+  //-------------------------------------------------------------------
+  public void setListener(Listener l)
+    { listener = l; }
+
+  //-------------------------------------------------------------------
+  //  Specify if consecutive terminals are reported as one token.
+  //  If not, each terminal is reported as a token, the same
+  //  as it appears in the rhs of Phrase seen by semantic actions.
+  //-------------------------------------------------------------------
+  public void setMergeTokens(boolean merge)
+    { mergeTokens = merge; }
+
+  //-------------------------------------------------------------------
+  //  Text between 'start' and 'end', for use by the Listener.
+  //  (Text released from SourceStream is not available.)
+  //-------------------------------------------------------------------
+  public String text(int start, int end)
+    { return text!=null? text.substring(start,end) : source.at(start,end); }
+
+  //-------------------------------------------------------------------
+  //  Initialize parsing
+  //-------------------------------------------------------------------
+  public void init(Source src)
+    {
+      super.init(src);
+      evCount = 0;
+      stkTop = 0;
+      parses++;
+    }
+
+  //-------------------------------------------------------------------
+  //  Drop references to input and buffered events.
+  //-------------------------------------------------------------------
+  public void resetParser()
+    {
+      super.resetParser();
+      evCount = 0;
+      stkTop = 0;
+    }
+
+  //-------------------------------------------------------------------
+  //  Close parser: pass remaining events if parse succeeded.
+  //-------------------------------------------------------------------
+  protected void closeParser(boolean ok)
+    {
+      if (ok)
+      {
+        flush(evCount);
+        succeeded = parses;
+      }
+      evCount = 0;
+      stkTop = 0;
+      super.closeParser(ok);
+    }
+
+  //-------------------------------------------------------------------
+  //  Raise low-water mark: commit point.
+  //  Events before the mark of the outermost expression that started
+  //  at or after the low-water mark cannot be undone: backtracking
+  //  over them would be backtracking to before the low-water mark.
+  //-------------------------------------------------------------------
+  void raiseLowWater(int p)
+    {
+      super.raiseLowWater(p);
+      int limit = evCount;
+      for (int i=stkTop-3; i>=0 && stk[i+1]>=lowWater; i-=3)
+        limit = stk[i+2];
+      if (limit<=0) return;
+      flush(limit);
+      if (stream!=null) stream.release(lowWater);
+    }
+
+
+  //=====================================================================
+  //
+  //  Methods called from parsing procedures
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Initialize processing of rule number 'rule'.
+  //-------------------------------------------------------------------
+  protected void beginRule(int rule)
+    {
+      super.beginRule(rule);
+      open(rule);
+      event(2*rule,pos,pos);
+    }
+
+  //-------------------------------------------------------------------
+  //  Initialize processing of inner expression or predicate.
+  //-------------------------------------------------------------------
+  protected void begin(final String name)
+    {
+      super.begin(name);
+      open(-1);
+    }
+
+  protected void begin(final String name,final String diag)
+    {
+      super.begin(name,diag);
+      open(-1);
+    }
+
+  protected void begin(final String name,int diag)
+    {
+      super.begin(name,diag);
+      open(-1);
+    }
+
+  //-------------------------------------------------------------------
+  //  Accept Rule.
+  //  Unlike 'accept' of ParserBase, does not add the Phrase
+  //  to the rhs of its parent.
+  //-------------------------------------------------------------------
+  protected boolean accept()
+    {
+      stkTop -= 3;
+      Phrase p = pop();
+      p.success = true;
+      current.end = pos;
+      if (hwmOn)
+        current.hwmUpdFrom(p);
+      event(2*stk[stkTop]+1,p.start,pos);
+      return true;
+    }
+
+  //-------------------------------------------------------------------
+  //  Accept Inner
+  //-------------------------------------------------------------------
+  protected boolean acceptInner()
+    {
+      stkTop -= 3;
+      return super.acceptInner();
+    }
+
+  //-------------------------------------------------------------------
+  //  Accept predicate: discard its events.
+  //-------------------------------------------------------------------
+  protected boolean acceptPred()
+    {
+      close();
+      return super.acceptPred();
+    }
+
+  //-------------------------------------------------------------------
+  //  Reject: discard events.
+  //-------------------------------------------------------------------
+  protected boolean reject()
+    {
+      close();
+      return super.reject();
+    }
+
+  protected boolean rejectInner()
+    {
+      close();
+      return super.rejectInner();
+    }
+
+  protected boolean rejectPred()
+    {
+      close();
+      return super.rejectPred();
+    }
+
+
+  //=====================================================================
+  //
+  //  Private methods
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Consume terminal: register token instead of adding it to rhs.
+  //  The token is merged with preceding token if that one ends here
+  //  and belongs to the same expression; otherwise the merge
+  //  could not be undone by 'close'.
+  //-------------------------------------------------------------------
+  boolean consume(int n)
+    {
+      int e = evCount-3;
+      if (mergeTokens && e>=0 && e>=stk[stkTop-1] && ev[e]==TOKEN && ev[e+2]==pos)
+        ev[e+2] = pos+n;
+      else
+        event(TOKEN,pos,pos+n);
+      pos += n;
+      current.end = pos;
+      return true;
+    }
+
+  //-------------------------------------------------------------------
+  //  Register start of expression.
+  //-------------------------------------------------------------------
+  private void open(int rule)
+    {
+      if (stkTop==stk.length)
+      {
+        int[] s = new int[2*stk.length];
+        System.arraycopy(stk,0,s,0,stkTop);
+        stk = s;
+      }
+      stk[stkTop] = rule;
+      stk[stkTop+1] = pos;
+      stk[stkTop+2] = evCount;
+      stkTop += 3;
+    }
+
+  //-------------------------------------------------------------------
+  //  Unregister expression and discard its events.
+  //  Events already passed to the Listener cannot be discarded;
+  //  in that case, the backtracking ends in CutFailure.
+  //-------------------------------------------------------------------
+  private void close()
+    {
+      stkTop -= 3;
+      int mark = stk[stkTop+2];
+      evCount = mark<0? 0 : mark;
+    }
+
+  //-------------------------------------------------------------------
+  //  Add event to buffer.
+  //-------------------------------------------------------------------
+  private void event(int code, int start, int end)
+    {
+      if (evCount==ev.length)
+      {
+        int[] e = new int[2*ev.length];
+        System.arraycopy(ev,0,e,0,evCount);
+        ev = e;
+      }
+      ev[evCount] = code;
+      ev[evCount+1] = start;
+      ev[evCount+2] = end;
+      evCount += 3;
+    }
+
+  //-------------------------------------------------------------------
+  //  Pass events before 'limit' to the Listener and remove them
+  //  from buffer. Marks on the stack are shifted accordingly;
+  //  those of committed expressions become negative.
+  //-------------------------------------------------------------------
+  private void flush(int limit)
+    {
+      if (listener!=null)
+      {
+        for (int i=0; i<limit; i+=3)
+        {
+          int c = ev[i];
+          if (c==TOKEN)
+            listener.token(ev[i+1],ev[i+2]);
+          else if ((c&1)==0)
+            listener.startRule(c>>1,ev[i+1]);
+          else
+            listener.endRule(c>>1,ev[i+1],ev[i+2]);
+        }
+      }
+      System.arraycopy(ev,limit,ev,0,evCount-limit);
+      evCount -= limit;
+      for (int i=2; i<stkTop; i+=3)
+        stk[i] -= limit;
+    }
+}
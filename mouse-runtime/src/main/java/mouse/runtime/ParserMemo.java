@@ -29,12 +29,47 @@
 //   Version 1.7
 //    140516 Changed initialization of 'cacheSize' to the default value 0.
 //    150629 The 'reuse' services rewritten to use new methods of 'Phrase'.
+//   Version 1.10
+//    261018 The 'reuse' services use 'rhsAdd' and 'rhsAddAll' of 'Phrase'.
+//    261018 Added to Cache number of its diagnostic name in the table
+//           of expected texts, passed to the new Phrase.
+//    261018 Do not propagate error info from reused Phrase if failure
+//           history is not kept ('hwmOn' false).
+//    261018 Added 'resetParser'. Cache objects reuse their arrays
+//           when reset.
+//    261018 Saved Phrases starting before low-water mark are dropped
+//           when the mark is raised by 'release' or 'cut'.
+//    261018 Added incremental reparsing: 'setIncremental' and 'edit'.
+//           When incremental, Cache keeps all saved Phrases in array
+//           indexed by position. The 'reuse' services update 'far'.
+//    261018 Cache has rule number ('ruleId'), recorded in the Phrase.
+//    261018 Added full memoization: 'setMemo(FULL)' makes each Cache
+//           keep all its results in a hash table keyed by position.
+//    261018 Added window memoization: 'setMemo(WINDOW)' drops results
+//           that cannot be used any more. Added 'memoPeak' and
+//           'windowPeak' for statistics.
+//    261018 Added memo budget: 'setMemoBudget' makes all Caches keep
+//           their results in one Store of limited size.
+//    261018 Added off-heap memoization: 'setMemo(OFFHEAP)' keeps
+//           results of all Caches in a table outside the Java heap.
+//    261018 Added failure memoization: 'setMemo(FAILURES)' makes each
+//           Cache keep only failures, as ints. Phrases saved with
+//           OFFHEAP or FAILURES are tracked until finished ('pending').
+//    261018 Added adaptive memoization: 'setMemo(ADAPTIVE)' makes each
+//           Cache start without memo and switch to FULL when it is
+//           called repeatedly at the same position.
+//    261018 ENTRY_BYTES made public, for the estimate by Generate -m.
+//    261018 A reused Phrase gets an empty range of deferred actions.
 //
 //=========================================================================
 
 package mouse.runtime;
 
 import mouse.runtime.Source;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 
 //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
@@ -47,9 +82,69 @@ import mouse.runtime.Source;
 public class ParserMemo extends ParserBase
 {
   //-------------------------------------------------------------------
-  //  Cache size.
+  //  Cache size: number of results kept by each Cache,
+  //  or FULL to keep all results, or WINDOW to keep those that
+  //  can be used, or OFFHEAP to keep all outside the heap,
+  //  or FAILURES to keep only failures, or ADAPTIVE to keep all
+  //  where it is needed (see 'setMemo').
   //-------------------------------------------------------------------
   int cacheSize = 0;
+  public static final int FULL = -1;
+  public static final int WINDOW = -2;
+  public static final int OFFHEAP = -3;
+  public static final int FAILURES = -4;
+  public static final int ADAPTIVE = -5;
+
+  //-------------------------------------------------------------------
+  //  With ADAPTIVE: number of repeated calls at the same position
+  //  that switch on memo for a Cache, and number of Caches
+  //  switched on in this parse.
+  //-------------------------------------------------------------------
+  int memoThreshold = 4;
+  int active;
+
+  //-------------------------------------------------------------------
+  //  With FULL, WINDOW, OFFHEAP, or FAILURES:
+  //  - 'held' is the number of results held by all Caches,
+  //    and 'heldPeak' the largest value of it in this parse;
+  //  - 'windowLow' is the start of the last saved Phrase
+  //    that is child of the top Phrase, and 'windowPeak'
+  //    the largest distance from it to start of a saved Phrase.
+  //-------------------------------------------------------------------
+  int held;
+  int heldPeak;
+  int windowLow;
+  int windowPeak;
+
+  //-------------------------------------------------------------------
+  //  Memo budget in bytes (see 'setMemoBudget'), 0 if none,
+  //  and Store shared by all Caches when there is a budget.
+  //  ENTRY_BYTES is the estimated memory per result held.
+  //-------------------------------------------------------------------
+  int memoBudget = 0;
+  Store store;
+  public static final int ENTRY_BYTES = 128;
+
+  //-------------------------------------------------------------------
+  //  Table shared by all Caches with OFFHEAP, else null.
+  //-------------------------------------------------------------------
+  OffHeap offHeap;
+
+  //-------------------------------------------------------------------
+  //  With OFFHEAP or FAILURES ('tracked' true): saved Phrases being
+  //  processed, and their Caches, to be told when the Phrase
+  //  is finished (see 'finished').
+  //-------------------------------------------------------------------
+  boolean tracked;
+  Phrase[] pending = new Phrase[64];
+  Cache[] pendingCache = new Cache[64];
+  int pendingTop;
+
+  //-------------------------------------------------------------------
+  //  Phrase returned for failure saved without its Phrase,
+  //  filled from the saved data.
+  //-------------------------------------------------------------------
+  final Phrase failure = new Phrase("","",0,null,null);
 
   //-------------------------------------------------------------------
   //  Phrase to reuse.
@@ -61,31 +156,256 @@ public class ParserMemo extends ParserBase
   //-------------------------------------------------------------------
   protected Cache[] caches;
 
+  //-------------------------------------------------------------------
+  //  Incremental reparsing (see 'setIncremental').
+  //  - 'edits' are changes of text reported since last parse,
+  //     each as {start, end of removed text, length of inserted text}.
+  //  - 'complete' tells if saved Phrases of last parse are complete
+  //     and can be reused after the edits.
+  //-------------------------------------------------------------------
+  boolean incremental = false;
+  ArrayList<int[]> edits = new ArrayList<int[]>();
+  boolean complete = false;
+
   //-------------------------------------------------------------------
   //  Constructor
   //-------------------------------------------------------------------
   protected ParserMemo()
-    {}
+    { failure.hwmExp = new int[1]; }
 
   //-------------------------------------------------------------------
   //  Initialize
   //-------------------------------------------------------------------
   public void init(Source src)
     {
+      boolean keep = incremental && complete
+                     && current!=null && current.parent==null;
       super.init(src);
-      for (Cache c: caches) // Reset Cache objects
+      if (memoBudget==0) store = null;
+      else
+      {
+        int n = Math.max(1,memoBudget/ENTRY_BYTES);
+        if (store==null || store.capacity!=n) store = new Store(n);
+        else store.clear();
+      }
+      if (cacheSize!=OFFHEAP || memoBudget>0 || incremental) offHeap = null;
+      else if (offHeap==null) offHeap = new OffHeap();
+      else offHeap.clear();
+      tracked = offHeap!=null
+                || (cacheSize==FAILURES && memoBudget==0 && !incremental);
+      Arrays.fill(pending,0,pendingTop,null);
+      Arrays.fill(pendingCache,0,pendingTop,null);
+      pendingTop = 0;
+      for (int i=0;i<caches.length;i++) // Reset Cache objects or apply edits
+      {
+        Cache c = caches[i];
+        c.id = i;
+        if (keep) c.edit();
+        else c.reset();
+      }
+      held = 0;
+      heldPeak = 0;
+      active = 0;
+      windowLow = 0;
+      windowPeak = 0;
+      edits.clear();
+      complete = true;
+    }
+
+  //-------------------------------------------------------------------
+  //  Initialize, specifying if failure history is to be kept.
+  //  Phrases saved without failure history are not reused
+  //  when the history is to be kept.
+  //-------------------------------------------------------------------
+  protected void init(Source src, boolean diag)
+    {
+      if (diag && !hwmOn) complete = false;
+      super.init(src,diag);
+    }
+
+  //-------------------------------------------------------------------
+  //  Reset, dropping references from Cache objects.
+  //-------------------------------------------------------------------
+  public void resetParser()
+    {
+      super.resetParser();
+      reuse = null;
+      edits.clear();
+      complete = false;
+      if (store!=null) store.clear();
+      if (offHeap!=null) offHeap.clear();
+      Arrays.fill(pending,0,pendingTop,null);
+      Arrays.fill(pendingCache,0,pendingTop,null);
+      pendingTop = 0;
+      for (Cache c: caches)
         c.reset();
     }
 
   //-------------------------------------------------------------------
-  //  Set cache size.
+  //  Terminate parse that failed after cut.
+  //  Saved Phrases being processed are left incomplete.
+  //-------------------------------------------------------------------
+  void cutFail()
+    {
+      complete = false;
+      super.cutFail();
+    }
+
+  //-------------------------------------------------------------------
+  //  Raise low-water mark (see ParserBase),
+  //  dropping saved Phrases that start before it.
+  //-------------------------------------------------------------------
+  void raiseLowWater(int p)
+    {
+      if (p<=lowWater) return;
+      super.raiseLowWater(p);
+      for (Cache c: caches)
+        c.release(p);
+    }
+
+  //-------------------------------------------------------------------
+  //  Set cache size: 0-9, FULL, WINDOW, OFFHEAP, FAILURES, or ADAPTIVE.
+  //  With cache size m in 0-9, each Cache keeps the last m results,
+  //  and looks for a result by checking all of them.
+  //  With FULL, each Cache keeps all results in a hash table keyed
+  //  by position, so any result can be found in constant time,
+  //  at the cost of memory for all of them (full packrat parsing).
+  //  WINDOW is FULL without results that cannot be used any more:
+  //  those starting before the Phrase being processed that is
+  //  a child of the top Phrase (that of the start rule).
+  //  The parser never backtracks to before the start of that Phrase:
+  //  the top Phrase may try an alternative at most at that start,
+  //  and if it fails, the parse fails. The memory used is thus
+  //  proportional to the longest child of the top Phrase rather
+  //  than to the input, which helps for grammars such as
+  //  'File = Item* !_'. (It does not help if the top Phrase
+  //  has a single child spanning the input.)
+  //  OFFHEAP is FULL with results of all Caches in one table
+  //  held outside the Java heap (see class OffHeap), which reduces
+  //  the work of garbage collector for large input.
+  //  FAILURES keeps only results that are failures, each as a few
+  //  ints in a hash table of its Cache, without the Phrase, so that
+  //  known failures are not parsed again. Successes are parsed again.
+  //  Most reuse in practice is of failures, so this gives most
+  //  of the benefit of FULL with a fraction of its memory.
+  //  A failure is not kept if the failure history is kept ('hwmOn')
+  //  and has more than one expression at its farthest position.
+  //  ADAPTIVE starts each parse without memo. Each Cache remembers
+  //  the positions of its recent calls; when it has been called
+  //  again at such position as many times as set by 'setMemoThreshold',
+  //  it switches to FULL for the rest of the parse. Procedures that
+  //  never backtrack thus do not pay for memo, while those that do
+  //  are protected against repeated parsing.
+  //  With all of these, results starting before the low-water mark
+  //  are dropped.
+  //  Takes effect at the next parse.
   //-------------------------------------------------------------------
   public void setMemo(int m)
     {
-      if (m<0 | m>9) throw new Error("m=" + m + " is outside range 0-9");
+      if (m<ADAPTIVE | m>9)
+        throw new Error("m=" + m + " is outside range 0-9");
       cacheSize = m;
     }
 
+  //-------------------------------------------------------------------
+  //  Set number of repeated calls that switch on memo with ADAPTIVE.
+  //-------------------------------------------------------------------
+  public void setMemoThreshold(int n)
+    {
+      if (n<1)
+        throw new Error("Memo threshold " + n + " is not positive");
+      memoThreshold = n;
+    }
+
+  //-------------------------------------------------------------------
+  //  Statistics of last parse with ADAPTIVE: number of Caches
+  //  that switched on memo.
+  //-------------------------------------------------------------------
+  public int memoActive()
+    { return active; }
+
+  //-------------------------------------------------------------------
+  //  Statistics of last parse with FULL, WINDOW, OFFHEAP, FAILURES,
+  //  or ADAPTIVE:
+  //  the largest number of results held at the same time
+  //  by all Caches (including those not yet dropped),
+  //  and (for WINDOW) the largest size of window in characters.
+  //-------------------------------------------------------------------
+  public int memoPeak()
+    { return heldPeak; }
+
+  public int windowPeak()
+    { return windowPeak; }
+
+  //-------------------------------------------------------------------
+  //  Set memo budget: approximate number of bytes to be used
+  //  for saved results, or 0 for no budget.
+  //  With a budget, all Caches keep their results in one Store,
+  //  independently of cache size. When the Store is full, a new
+  //  result replaces one that was not reused recently, whichever
+  //  Cache it belongs to, so the memory goes to the rules that
+  //  benefit from it. The estimate of ENTRY_BYTES per result covers
+  //  the Phrase and its entry in the Store, but not the Phrases
+  //  in its rhs, which are usually held by the parse tree anyway.
+  //  Incremental reparsing (see 'setIncremental') does not use
+  //  the Store. Takes effect at the next parse.
+  //-------------------------------------------------------------------
+  public void setMemoBudget(int bytes)
+    {
+      if (bytes<0)
+        throw new Error("Memo budget " + bytes + " is negative");
+      memoBudget = bytes;
+    }
+
+  //-------------------------------------------------------------------
+  //  Statistics of last parse with memo budget: numbers of results
+  //  found and not found in the Store, and of results evicted
+  //  to make room for new ones.
+  //-------------------------------------------------------------------
+  public int memoHits()
+    { return store==null? 0 : store.hits; }
+
+  public int memoMisses()
+    { return store==null? 0 : store.misses; }
+
+  public int memoEvictions()
+    { return store==null? 0 : store.evictions; }
+
+  //-------------------------------------------------------------------
+  //  Incremental reparsing.
+  //  When set on, the parser keeps all Phrases saved during a parse,
+  //  independently of cache size. Before parsing a modified version
+  //  of the text, report the modifications by calling 'edit'
+  //  for each of them. The next 'parse' reuses every saved Phrase
+  //  whose examined text (from 'start' to 'far') is not affected,
+  //  at the position shifted by inserted and removed text.
+  //  The Phrases are not reused after a parse that failed after cut
+  //  or was terminated by exception.
+  //  Semantic values of reused Phrases are those computed by the
+  //  earlier parse: their semantic actions are not executed again
+  //  and must not depend on anything outside their rhs.
+  //  The mode takes effect at the next parse.
+  //-------------------------------------------------------------------
+  public void setIncremental(boolean on)
+    {
+      incremental = on;
+      complete = false;
+      edits.clear();
+    }
+
+  //-------------------------------------------------------------------
+  //  Report modification of the text since the last parse:
+  //  'removed' characters starting at position 'at' were replaced
+  //  by 'inserted' characters. Positions of successive modifications
+  //  refer to the text after the preceding ones.
+  //-------------------------------------------------------------------
+  public void edit(int at, int removed, int inserted)
+    {
+      if (at<0 | removed<0 | inserted<0)
+        throw new Error("Invalid edit " + at + "," + removed + "," + inserted);
+      edits.add(new int[]{at,at+removed,inserted});
+    }
+
 
   //=====================================================================
   //
@@ -103,6 +423,8 @@ public class ParserMemo extends ParserBase
         return true;                   // .. return
 
       begin(c.name,c.diag);            // Otherwise push new Phrase
+      current.diagId = c.diagId;
+      current.ruleId = c.ruleId;
       c.save(current);                 // .. and cache it
       return false;
     }
@@ -118,10 +440,77 @@ public class ParserMemo extends ParserBase
         return true;                   // .. return
 
       begin("",c.diag);                // Otherwise push new Phrase
+      current.diagId = c.diagId;
       c.save(current);                 // .. and cache it
       return false;
     }
 
+  //-------------------------------------------------------------------
+  //  Accept and reject: tell that the Phrase is finished.
+  //-------------------------------------------------------------------
+  protected boolean accept()
+    {
+      Phrase p = current;
+      super.accept();
+      if (tracked) finished(p);
+      return true;
+    }
+
+  protected boolean acceptInner()
+    {
+      Phrase p = current;
+      super.acceptInner();
+      if (tracked) finished(p);
+      return true;
+    }
+
+  protected boolean acceptPred()
+    {
+      Phrase p = current;
+      super.acceptPred();
+      if (tracked) finished(p);
+      return true;
+    }
+
+  protected boolean reject()
+    {
+      Phrase p = current;
+      super.reject();
+      if (tracked) finished(p);
+      return false;
+    }
+
+  protected boolean rejectInner()
+    {
+      Phrase p = current;
+      super.rejectInner();
+      if (tracked) finished(p);
+      return false;
+    }
+
+  protected boolean rejectPred()
+    {
+      Phrase p = current;
+      super.rejectPred();
+      if (tracked) finished(p);
+      return false;
+    }
+
+  //-------------------------------------------------------------------
+  //  Phrase 'p' finished: if it is the last pending one,
+  //  remove it and tell its Cache.
+  //  (Pending Phrases below 'p' were abandoned by a cut failure.)
+  //-------------------------------------------------------------------
+  private void finished(Phrase p)
+    {
+      if (pendingTop==0 || pending[pendingTop-1]!=p) return;
+      pendingTop--;
+      Cache c = pendingCache[pendingTop];
+      pending[pendingTop] = null;
+      pendingCache[pendingTop] = null;
+      c.done(p);
+    }
+
   //-------------------------------------------------------------------
   //  Reuse Rule
   //-------------------------------------------------------------------
@@ -129,10 +518,15 @@ public class ParserMemo extends ParserBase
     {
       pos = reuse.end;                 // Update position
       current.end = pos;               // Update end of current
-      current.hwmUpdFrom(reuse);       // Propagate error info
+      if (reuse.far>far)
+        far = reuse.far;               // Update examined text
+      if (hwmOn)
+        current.hwmUpdFrom(reuse);     // Propagate error info
       if (!reuse.success)
          return false;
-      current.rhs.add(reuse);          // Attach to rhs of current
+      reuse.actMark = acts.count;      // Its actions were discarded
+      reuse.actEnd = acts.count;
+      current.rhsAdd(reuse);           // Attach to rhs of current
         return true;
     }
 
@@ -143,10 +537,13 @@ public class ParserMemo extends ParserBase
     {
       pos = reuse.end;                 // Update position
       current.end = pos;               // Update end of current
-      current.hwmUpdFrom(reuse);       // Propagate error info
+      if (reuse.far>far)
+        far = reuse.far;               // Update examined text
+      if (hwmOn)
+        current.hwmUpdFrom(reuse);     // Propagate error info
       if (!reuse.success)
          return false;
-      current.rhs.addAll(reuse.rhs);   // Add rhs to rhs of current
+      current.rhsAddAll(reuse);        // Add rhs to rhs of current
         return true;
     }
 
@@ -157,7 +554,10 @@ public class ParserMemo extends ParserBase
     {
       pos = reuse.end;                 // Update position
       current.end = pos;               // Update end of current
-      current.hwmUpdFrom(reuse);       // Propagate error info
+      if (reuse.far>far)
+        far = reuse.far;               // Update examined text
+      if (hwmOn)
+        current.hwmUpdFrom(reuse);     // Propagate error info
       return (reuse.success);
     }
 
@@ -172,44 +572,745 @@ public class ParserMemo extends ParserBase
   {
     public final String name;
     public final String diag;
+    final int diagId;      // Number of 'diag' in expected texts or -1
+    final int ruleId;      // Number of rule or -1
+    int id;                // Index in 'caches'
 
     Phrase[] cache;
     int last;
 
+    //-----------------------------------------------------------------
+    //  If incremental, all saved Phrases by position, else null.
+    //  Positions below 'top' are kept in 'all' with a gap, so that
+    //  text can be inserted or removed at the gap without moving
+    //  the rest. Phrase saved at position i is in all[i] if i<gap,
+    //  or in all[i+gapLen] otherwise. Elements in the gap
+    //  and after it, beyond top+gapLen, are null.
+    //  'wide' is the largest 'far-start' of Phrases in 'all',
+    //  except those saved since last 'edit', whose positions
+    //  are 'fresh[0]' through 'fresh[freshCount-1]'.
+    //-----------------------------------------------------------------
+    Phrase[] all;
+    int top;
+    int gap;
+    int gapLen;
+    int wide;
+    int[] fresh;
+    int freshCount;
+
+    //-----------------------------------------------------------------
+    //  If FULL or WINDOW, saved Phrases in hash table with open
+    //  addressing, keyed by position: 'keys[i]' is position+1 of Phrase
+    //  'vals[i]', or 0 for empty slot. 'count' is the number of slots
+    //  in use. Phrases starting before 'low' (and, for WINDOW, before
+    //  'windowLow') are dropped when the table is rebuilt.
+    //  If FAILURES, the same table holds only failures, with 'info'
+    //  instead of 'vals': 'info[3*i]' is 'far' of failure 'keys[i]',
+    //  and the next two are its 'hwm' and 'hwmExp[0]' (or -1).
+    //-----------------------------------------------------------------
+    int[] keys;
+    Phrase[] vals;
+    int[] info;
+    int count;
+    int low;
+
+    //-----------------------------------------------------------------
+    //  If ADAPTIVE and memo not yet switched on: 'seen[p&15]' is p+1
+    //  for recent call at position p, and 'rescans' is the number
+    //  of calls at a position found there.
+    //-----------------------------------------------------------------
+    int[] seen;
+    int rescans;
+
     public Cache(final String name)
-      {
-        this.name = name;
-        this.diag = name;
-      }
+      { this(name,name,-1,-1); }
 
     public Cache(final String name, final String diag)
+      { this(name,diag,-1,-1); }
+
+    public Cache(final String name, final String diag, int diagId)
+      { this(name,diag,diagId,-1); }
+
+    public Cache(final String name, final String diag, int diagId, int ruleId)
       {
         this.name = name;
         this.diag = diag;
+        this.diagId = diagId;
+        this.ruleId = ruleId;
       }
 
     void reset()
       {
-        cache = new Phrase[cacheSize];
+        int size = cacheSize>0 && memoBudget==0? cacheSize : 0;
+        if (cache==null || cache.length!=size)
+          cache = new Phrase[size];
+        else
+          Arrays.fill(cache,null);
         last = 0;
+        boolean hash = (cacheSize==FULL | cacheSize==WINDOW) && memoBudget==0;
+        boolean fail = cacheSize==FAILURES && memoBudget==0;
+        keys = hash|fail? new int[16] : null;
+        vals = hash? new Phrase[16] : null;
+        info = fail? new int[3*16] : null;
+        seen = cacheSize==ADAPTIVE && memoBudget==0? new int[16] : null;
+        rescans = 0;
+        count = 0;
+        low = 0;
+        all = incremental? new Phrase[64] : null;
+        fresh = incremental? new int[64] : null;
+        top = 0;
+        gap = 0;
+        gapLen = 0;
+        wide = 0;
+        freshCount = 0;
+      }
+
+    //-----------------------------------------------------------------
+    //  Apply 'edits' to saved Phrases. For each edit, drop Phrases
+    //  that examined text after its start and start before its end,
+    //  and move the gap there to change the positions that follow.
+    //  The moved Phrases still have old positions and 'source':
+    //  they are updated by 'find' when the Phrase is reused.
+    //  Note that 'far-start' does not change when Phrase is moved.
+    //-----------------------------------------------------------------
+    void edit()
+      {
+        for (int i=0;i<freshCount;i++)
+        {
+          Phrase p = all[slot(fresh[i])];
+          if (p.far-p.start>wide) wide = p.far-p.start;
+        }
+        freshCount = 0;
+
+        for (int[] e: edits)
+        {
+          int a = e[0];
+          int b = e[1];
+          for (int i=(a>wide? a-wide : 0);i<a && i<top;i++)
+          {
+            int k = slot(i);
+            Phrase p = all[k];
+            if (p!=null && i+p.far-p.start>a) all[k] = null;
+          }
+          if (a>=top) continue;
+          if (b>top) b = top;
+          moveGap(b);                    // Remove positions a to b
+          Arrays.fill(all,a,b,null);
+          gap = a;
+          gapLen += b-a;
+          top -= b-a;
+          int n = e[2];                  // Insert n positions
+          if (n>gapLen) widen(n+top/16+16);
+          gap += n;
+          gapLen -= n;
+          top += n;
+        }
+      }
+
+    //-----------------------------------------------------------------
+    //  Index in 'all' for position i below 'top'.
+    //-----------------------------------------------------------------
+    private int slot(int i)
+      { return i<gap? i : i+gapLen; }
+
+    //-----------------------------------------------------------------
+    //  Move gap to position g.
+    //-----------------------------------------------------------------
+    private void moveGap(int g)
+      {
+        if (g<gap)
+        {
+          System.arraycopy(all,g,all,g+gapLen,gap-g);
+          Arrays.fill(all,g,Math.min(gap,g+gapLen),null);
+        }
+        else if (g>gap)
+        {
+          System.arraycopy(all,gap+gapLen,all,gap,g-gap);
+          Arrays.fill(all,Math.max(g,gap+gapLen),g+gapLen,null);
+        }
+        gap = g;
+      }
+
+    //-----------------------------------------------------------------
+    //  Make the gap 'n' long (more than now).
+    //-----------------------------------------------------------------
+    private void widen(int n)
+      {
+        int need = top + n;
+        if (need>all.length)
+        {
+          Phrase[] t = new Phrase[need>2*all.length? need : 2*all.length];
+          System.arraycopy(all,0,t,0,gap);
+          System.arraycopy(all,gap+gapLen,t,gap+n,top-gap);
+          all = t;
+        }
+        else
+        {
+          System.arraycopy(all,gap+gapLen,all,gap+n,top-gap);
+          Arrays.fill(all,gap+gapLen,gap+n,null);
+        }
+        gapLen = n;
+      }
+
+    //-----------------------------------------------------------------
+    //  Make room in 'all' for positions up to 'n'.
+    //-----------------------------------------------------------------
+    private void grow(int n)
+      {
+        int need = n + gapLen;
+        Phrase[] t = new Phrase[need>2*all.length? need : 2*all.length];
+        System.arraycopy(all,0,t,0,top+gapLen);
+        all = t;
+      }
+
+    void release(int p)
+      {
+        if (all!=null) return;     // Kept for next parse
+        if (store!=null) return;   // Dropped by Store when full
+        if (offHeap!=null) return; // Dropped by OffHeap when rebuilt
+        if (keys!=null)
+        {
+          low = p;                 // Dropped when table is rebuilt
+          return;
+        }
+        for (int i=0;i<cache.length;i++)
+          if (cache[i]!=null && cache[i].start<p) cache[i] = null;
       }
 
     void save(Phrase p)
       {
-        if (cacheSize==0) return;
+        if (all!=null)
+        {
+          int i = p.start;
+          if (i>=top)
+          {
+            if (i+1+gapLen>all.length) grow(i+1);
+            top = i+1;
+          }
+          all[slot(i)] = p;
+          if (freshCount==fresh.length)
+            fresh = Arrays.copyOf(fresh,2*freshCount);
+          fresh[freshCount++] = i;
+          return;
+        }
+        if (store!=null)
+        {
+          store.save(id,p.start,p,lowWater);
+          return;
+        }
+        if (offHeap!=null)
+          offHeap.save(id,p);
+        if (tracked)
+        {
+          if (pendingTop==pending.length)
+          {
+            pending = Arrays.copyOf(pending,2*pendingTop);
+            pendingCache = Arrays.copyOf(pendingCache,2*pendingTop);
+          }
+          pending[pendingTop] = p;
+          pendingCache[pendingTop++] = this;
+          return;
+        }
+        if (keys!=null)
+        {
+          if (cacheSize==WINDOW)
+          {
+            Phrase q = p.parent;           // Child of top: q.parent is
+            if (q.parent!=null && q.parent.parent==null) // dummy bottom
+              windowLow = p.start;
+            if (p.start-windowLow>windowPeak) windowPeak = p.start-windowLow;
+          }
+          int k = p.start+1;
+          int m = keys.length-1;
+          int i = hash(k) & m;
+          while (keys[i]!=0 && keys[i]!=k) i = (i+1) & m;
+          if (keys[i]==0)
+          {
+            keys[i] = k;
+            count++;
+            if (++held>heldPeak) heldPeak = held;
+          }
+          vals[i] = p;
+          if (2*count>keys.length) rebuild();
+          return;
+        }
+        if (cacheSize<=0) return;
         last = (last+1)%cacheSize;
         cache[last] = p;
       }
 
     Phrase find()
       {
-        if (cacheSize==0) return null;
+        if (all!=null)
+        {
+          if (pos>=top) return null;
+          Phrase p = all[slot(pos)];
+          if (p!=null && (p.start!=pos || p.source!=source))
+            p.moveTo(pos,source);
+          return p;
+        }
+        if (store!=null)
+          return store.find(id,pos);
+        if (offHeap!=null)
+          return offHeap.find(id,pos);
+        if (seen!=null && keys==null)
+        {
+          int i = pos & 15;
+          if (seen[i]!=pos+1) seen[i] = pos+1;
+          else if (++rescans>=memoThreshold)
+          {
+            keys = new int[16];        // Switch to FULL
+            vals = new Phrase[16];
+            active++;
+          }
+          return null;
+        }
+        if (keys!=null)
+        {
+          int k = pos+1;
+          int m = keys.length-1;
+          for (int i=hash(k)&m; keys[i]!=0; i=(i+1)&m)
+          {
+            if (keys[i]!=k) continue;
+            if (info==null) return vals[i];
+            failure.end = pos;
+            failure.far = info[3*i];
+            failure.hwm = info[3*i+1];
+            failure.hwmExp[0] = info[3*i+2];
+            failure.hwmCnt = info[3*i+2]<0? 0 : 1;
+            return failure;
+          }
+          return null;
+        }
+        if (cacheSize<=0) return null;
         for (Phrase p: cache)
           if (p!=null && p.start==pos) return p;
         return null;
       }
+
+    //-----------------------------------------------------------------
+    //  Saved Phrase 'p' finished (with OFFHEAP or FAILURES).
+    //-----------------------------------------------------------------
+    void done(Phrase p)
+      {
+        if (offHeap!=null)
+        {
+          offHeap.done(id,p);
+          return;
+        }
+        if (p.success || (hwmOn && p.hwmCnt>1)) return;
+        int k = p.start+1;
+        int m = keys.length-1;
+        int i = hash(k) & m;
+        while (keys[i]!=0 && keys[i]!=k) i = (i+1) & m;
+        if (keys[i]==0)
+        {
+          keys[i] = k;
+          count++;
+          if (++held>heldPeak) heldPeak = held;
+        }
+        info[3*i] = p.far;
+        info[3*i+1] = p.hwm;
+        info[3*i+2] = p.hwmCnt>0? p.hwmExp[0] : -1;
+        if (2*count>keys.length) rebuild();
+      }
+
+    //-----------------------------------------------------------------
+    //  Rebuild the hash table without Phrases starting before 'low'
+    //  or 'windowLow', with size at least four times the number
+    //  of remaining ones.
+    //-----------------------------------------------------------------
+    private void rebuild()
+      {
+        if (cacheSize==WINDOW && windowLow>low) low = windowLow;
+        int live = 0;
+        for (int i=0;i<keys.length;i++)
+          if (keys[i]>low) live++;
+        int n = 16;
+        while (n<4*live) n *= 2;
+        int[] oldKeys = keys;
+        Phrase[] oldVals = vals;
+        int[] oldInfo = info;
+        keys = new int[n];
+        if (vals!=null) vals = new Phrase[n];
+        if (info!=null) info = new int[3*n];
+        int m = n-1;
+        for (int j=0;j<oldKeys.length;j++)
+        {
+          int k = oldKeys[j];
+          if (k<=low) continue;
+          int i = hash(k) & m;
+          while (keys[i]!=0) i = (i+1) & m;
+          keys[i] = k;
+          if (vals!=null) vals[i] = oldVals[j];
+          if (info!=null) System.arraycopy(oldInfo,3*j,info,3*i,3);
+        }
+        held -= count-live;
+        count = live;
+      }
+
+    //-----------------------------------------------------------------
+    //  Hash of key in the table.
+    //-----------------------------------------------------------------
+    private int hash(int k)
+      {
+        k *= 0x9E3779B9;
+        return k ^ (k>>>16);
+      }
   }
 
+
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //
+  //  Store
+  //
+  //-----------------------------------------------------------------------
+  //
+  //  Results of all Caches, at most 'capacity' of them.
+  //  Entry e holds Phrase 'val[e]' saved by Cache number 'owner[e]'
+  //  at position 'at[e]'; 'used[e]' is set when the entry is saved
+  //  or found. The entries are located through 'index', a hash table
+  //  with linear probing that holds entry number+1, or 0 for empty slot.
+  //  When all entries are in use, the one to replace is chosen
+  //  by the CLOCK algorithm: 'hand' goes round the entries clearing
+  //  their 'used' flags, and stops at the first entry whose flag
+  //  is not set, or that starts before the low-water mark.
+  //
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+  static class Store
+  {
+    final int capacity;
+    final int[] owner;
+    final int[] at;
+    final Phrase[] val;
+    final boolean[] used;
+    final int[] index;
+    int size;
+    int hand;
+
+    int hits;
+    int misses;
+    int evictions;
+
+    Store(int capacity)
+      {
+        this.capacity = capacity;
+        owner = new int[capacity];
+        at = new int[capacity];
+        val = new Phrase[capacity];
+        used = new boolean[capacity];
+        int n = 16;
+        while (n<2*capacity) n *= 2;
+        index = new int[n];
+      }
+
+    void clear()
+      {
+        Arrays.fill(val,null);
+        Arrays.fill(index,0);
+        size = 0;
+        hand = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+      }
+
+    Phrase find(int c, int p)
+      {
+        int e = index[slot(c,p)]-1;
+        if (e<0)
+        {
+          misses++;
+          return null;
+        }
+        hits++;
+        used[e] = true;
+        return val[e];
+      }
+
+    void save(int c, int p, Phrase ph, int low)
+      {
+        int i = slot(c,p);
+        int e = index[i]-1;
+        if (e<0)
+        {
+          if (size<capacity) e = size++;
+          else
+          {
+            e = victim(low);
+            remove(e);
+            evictions++;
+            i = slot(c,p);
+          }
+          owner[e] = c;
+          at[e] = p;
+          index[i] = e+1;
+        }
+        val[e] = ph;
+        used[e] = true;
+      }
+
+    //-----------------------------------------------------------------
+    //  Slot of 'index' for Cache c and position p:
+    //  the one with their entry, or the empty one where it would be.
+    //-----------------------------------------------------------------
+    private int slot(int c, int p)
+      {
+        int m = index.length-1;
+        int i = hash(c,p) & m;
+        while (true)
+        {
+          int e = index[i]-1;
+          if (e<0 || (at[e]==p && owner[e]==c)) return i;
+          i = (i+1) & m;
+        }
+      }
+
+    //-----------------------------------------------------------------
+    //  Entry to replace.
+    //-----------------------------------------------------------------
+    private int victim(int low)
+      {
+        while (true)
+        {
+          int e = hand;
+          hand = (hand+1)%capacity;
+          if (!used[e] || at[e]<low) return e;
+          used[e] = false;
+        }
+      }
+
+    //-----------------------------------------------------------------
+    //  Remove entry e from 'index', moving back the entries that follow
+    //  it in the probe sequence so that they can still be found.
+    //-----------------------------------------------------------------
+    private void remove(int e)
+      {
+        int m = index.length-1;
+        int i = slot(owner[e],at[e]);
+        int j = i;
+        while (true)
+        {
+          j = (j+1) & m;
+          int f = index[j]-1;
+          if (f<0) break;
+          int k = hash(owner[f],at[f]) & m;
+          if (i<j? (i<k && k<=j) : (i<k || k<=j)) continue;
+          index[i] = index[j];
+          i = j;
+        }
+        index[i] = 0;
+        val[e] = null;
+      }
+
+    private static int hash(int c, int p)
+      {
+        int h = p*0x9E3779B9 + c*0x85EBCA6B;
+        return h ^ (h>>>16);
+      }
+  }
+
+
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //
+  //  OffHeap
+  //
+  //-----------------------------------------------------------------------
+  //
+  //  Results of all Caches in a hash table with open addressing,
+  //  held in direct ByteBuffers outside the Java heap, so that
+  //  the garbage collector does not have to scan it.
+  //  The table consists of segments of SEG entries, each in its own
+  //  buffer, as a buffer cannot be larger than 2GB.
+  //  Each entry has REC ints:
+  //    0  number of Cache + 1, or 0 for empty entry;
+  //    1  position;
+  //    2  number of the Phrase in 'heap', or -1 if there is none;
+  //    3  end, 4 far, 5 hwm, 6 hwmExp[0] or -1:
+  //       the failure, if there is no Phrase;
+  //    7  not used.
+  //  A Phrase is kept in 'heap' while it is being processed.
+  //  When finished, it is dropped if the entry can replace it
+  //  for reuse: if it failed, and its failure history has
+  //  at most one expression. Then 'find' returns the Phrase 'failure'
+  //  filled from the entry. Successful Phrases stay in 'heap':
+  //  they are referenced from the parse tree anyway.
+  //  Entries starting before the low-water mark are dropped
+  //  when the table is rebuilt.
+  //
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+  class OffHeap
+  {
+    static final int REC = 8;
+    static final int SEGBITS = 22;
+    static final int SEG = 1<<SEGBITS; // Entries in a segment (128MB)
+
+    IntBuffer[] tab;
+    int cap;                           // Number of entries, power of 2
+    int count;                         // Entries in use
+
+    Phrase[] heap = new Phrase[1024];
+    int heapTop;
+    int[] free = new int[64];          // Free elements of 'heap'
+    int freeCount;
+
+    OffHeap()
+      { alloc(1024); }
+
+    void clear()
+      {
+        if (count>0)
+          for (int i=0;i<cap;i++)
+            put(i,0,0);
+        count = 0;
+        Arrays.fill(heap,0,heapTop,null);
+        heapTop = 0;
+        freeCount = 0;
+      }
+
+    Phrase find(int c, int p)
+      {
+        int i = slot(c,p);
+        if (get(i,0)==0) return null;
+        int h = get(i,2);
+        if (h>=0) return heap[h];
+        failure.end = get(i,3);
+        failure.far = get(i,4);
+        failure.hwm = get(i,5);
+        failure.hwmExp[0] = get(i,6);
+        failure.hwmCnt = failure.hwmExp[0]<0? 0 : 1;
+        return failure;
+      }
+
+    void save(int c, Phrase ph)
+      {
+        int p = ph.start;
+        int i = slot(c,p);
+        if (get(i,0)==0)
+        {
+          put(i,0,c+1);
+          put(i,1,p);
+          count++;
+          if (++held>heldPeak) heldPeak = held;
+        }
+        else if (get(i,2)>=0)
+          release(get(i,2));
+        int h;
+        if (freeCount>0) h = free[--freeCount];
+        else
+        {
+          if (heapTop==heap.length) heap = Arrays.copyOf(heap,2*heapTop);
+          h = heapTop++;
+        }
+        heap[h] = ph;
+        put(i,2,h);
+        if (3*count>2*cap) rebuild();
+      }
+
+    //-----------------------------------------------------------------
+    //  Phrase 'ph' of Cache c finished. Drop it if the entry
+    //  can replace it.
+    //-----------------------------------------------------------------
+    void done(int c, Phrase ph)
+      {
+        if (ph.success || ph.hwmCnt>1) return;
+        int i = slot(c,ph.start);
+        int h = get(i,2);
+        if (get(i,0)==0 || h<0 || heap[h]!=ph) return;
+        release(h);
+        put(i,2,-1);
+        put(i,3,ph.end);
+        put(i,4,ph.far);
+        put(i,5,ph.hwm);
+        put(i,6,ph.hwmCnt>0? ph.hwmExp[0] : -1);
+      }
+
+    //-----------------------------------------------------------------
+    //  Entry for Cache c and position p: the one that has them,
+    //  or the empty one where it would be.
+    //-----------------------------------------------------------------
+    private int slot(int c, int p)
+      {
+        int m = cap-1;
+        int h = p*0x9E3779B9 + c*0x85EBCA6B;
+        int i = (h ^ (h>>>16)) & m;
+        while (true)
+        {
+          int k = get(i,0);
+          if (k==0 || (k==c+1 && get(i,1)==p)) return i;
+          i = (i+1) & m;
+        }
+      }
+
+    //-----------------------------------------------------------------
+    //  Field f of entry i.
+    //-----------------------------------------------------------------
+    private int get(int i, int f)
+      { return tab[i>>>SEGBITS].get(REC*(i&(SEG-1))+f); }
+
+    private void put(int i, int f, int v)
+      { tab[i>>>SEGBITS].put(REC*(i&(SEG-1))+f,v); }
+
+    //-----------------------------------------------------------------
+    //  Free element h of 'heap'.
+    //-----------------------------------------------------------------
+    private void release(int h)
+      {
+        heap[h] = null;
+        if (freeCount==free.length) free = Arrays.copyOf(free,2*freeCount);
+        free[freeCount++] = h;
+      }
+
+    //-----------------------------------------------------------------
+    //  Allocate table of n entries.
+    //-----------------------------------------------------------------
+    private void alloc(int n)
+      {
+        if (n<=0) throw new Error("Memo table too large");
+        cap = n;
+        int size = n<SEG? n : SEG;
+        tab = new IntBuffer[n/size];
+        for (int i=0;i<tab.length;i++)
+          tab[i] = ByteBuffer.allocateDirect(4*REC*size).asIntBuffer();
+      }
+
+    //-----------------------------------------------------------------
+    //  Rebuild the table without entries starting before low-water
+    //  mark, with size at least twice the number of remaining ones.
+    //-----------------------------------------------------------------
+    private void rebuild()
+      {
+        int live = 0;
+        for (int i=0;i<cap;i++)
+          if (get(i,0)!=0 && get(i,1)>=lowWater) live++;
+        int n = 1024;
+        while (n>0 && n<2*live) n *= 2;
+        IntBuffer[] oldTab = tab;
+        int oldCap = cap;
+        alloc(n);
+        int[] rec = new int[REC];
+        for (int j=0;j<oldCap;j++)
+        {
+          IntBuffer b = oldTab[j>>>SEGBITS];
+          b.position(REC*(j&(SEG-1)));
+          b.get(rec);
+          if (rec[0]==0) continue;
+          if (rec[1]<lowWater)
+          {
+            if (rec[2]>=0) release(rec[2]);
+            continue;
+          }
+          int i = slot(rec[0]-1,rec[1]);
+          b = tab[i>>>SEGBITS];
+          b.position(REC*(i&(SEG-1)));
+          b.put(rec);
+        }
+        held -= count-live;
+        count = live;
+      }
+  }
 }
 
 
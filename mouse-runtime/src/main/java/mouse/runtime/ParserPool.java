@@ -0,0 +1,246 @@
+//=========================================================================
+//
+//  Part of PEG parser generator Mouse.
+//
+//  Copyright (C) 2026 by Roman R. Redziejowski (www.romanredz.se).
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//-------------------------------------------------------------------------
+//
+//  Change log
+//   261018 Created for version 1.10.
+//   261018 Instances of 'parserClass' created via its Constructor
+//          instead of the deprecated 'Class.newInstance'.
+//
+//=========================================================================
+
+package mouse.runtime;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+//
+//  ParserPool
+//
+//-------------------------------------------------------------------------
+//
+//  Pool of instances of a generated parser, for use by several threads.
+//
+//  A parser instance keeps the state of parsing: current position,
+//  the stack of Phrases, Cache objects of a memoizing parser, and
+//  the semantics object created by its constructor. It can thus be
+//  used by only one thread at a time. The pool hands out such
+//  instances, each together with its semantics object, to one thread
+//  at a time, and takes them back for reuse, so that they are not
+//  constructed for each parse. At most 'capacity' instances are
+//  created; they are created when first needed.
+//
+//  Use:
+//
+//    ParserPool<MyParser> pool = new ParserPool<MyParser>(MyParser.class,8);
+//    ...
+//    MyParser parser = pool.acquire();
+//    try
+//    {
+//      parser.parse(src);
+//      ... use parser.semantics() ...
+//    }
+//    finally
+//    { pool.release(parser); }
+//
+//  What can be shared between threads:
+//  - The generated parser class. Its static data (list of expected
+//    texts, character set bitmaps, procedure numbers) is never
+//    modified after the class is initialized.
+//  - Source objects. The parser does not modify them, and SourceString
+//    and SourceFile do not change after construction.
+//  - The pool itself.
+//  What must not be shared:
+//  - The parser instance and its semantics object, including
+//    the Phrase objects and any results kept by the semantics.
+//    They may be used only between 'acquire' and 'release'.
+//    The results must be copied out before 'release'.
+//
+//  An instance is returned to the pool after 'resetParser', which
+//  drops its references to the input and to the Phrases, keeping
+//  only the allocated space for reuse. Semantics is initialized by
+//  the parser on each 'parse', as usual.
+//
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+public class ParserPool<P extends ParserBase>
+{
+  //=====================================================================
+  //
+  //  Factory for parser instances.
+  //  Can be used to set up each new instance, for example,
+  //  by 'setMemo' and 'setTrace'.
+  //
+  //=====================================================================
+  public interface Factory<P>
+  {
+    P create();
+  }
+
+  //=====================================================================
+  //
+  //  Data
+  //
+  //=====================================================================
+  private final Factory<P> factory;
+  private final int capacity;
+
+  //-------------------------------------------------------------------
+  //  Instances available for reuse.
+  //-------------------------------------------------------------------
+  private final ConcurrentLinkedQueue<P> idle = new ConcurrentLinkedQueue<P>();
+
+  //-------------------------------------------------------------------
+  //  Permits: number of instances that can still be handed out.
+  //-------------------------------------------------------------------
+  private final Semaphore permits;
+
+  //-------------------------------------------------------------------
+  //  Number of instances created so far.
+  //-------------------------------------------------------------------
+  private int created = 0;
+
+  //=====================================================================
+  //
+  //  Constructors
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Pool of at most 'capacity' instances created by 'factory'.
+  //-------------------------------------------------------------------
+  public ParserPool(Factory<P> factory, int capacity)
+    {
+      if (capacity<1) throw new Error("Pool capacity " + capacity + " is less than 1");
+      this.factory = factory;
+      this.capacity = capacity;
+      permits = new Semaphore(capacity,true);
+    }
+
+  //-------------------------------------------------------------------
+  //  Pool of at most 'capacity' instances of 'parserClass',
+  //  created by its constructor without arguments.
+  //-------------------------------------------------------------------
+  public ParserPool(final Class<P> parserClass, int capacity)
+    {
+      this
+        (new Factory<P>()
+          {
+            public P create()
+              {
+                try
+                { return parserClass.getDeclaredConstructor().newInstance(); }
+                catch (NoSuchMethodException e)
+                { throw new Error("Cannot create " + parserClass.getName(),e); }
+                catch (InstantiationException e)
+                { throw new Error("Cannot create " + parserClass.getName(),e); }
+                catch (IllegalAccessException e)
+                { throw new Error("Cannot create " + parserClass.getName(),e); }
+                catch (InvocationTargetException e)
+                { throw new Error("Cannot create " + parserClass.getName(),e.getCause()); }
+              }
+          },
+         capacity);
+    }
+
+  //=====================================================================
+  //
+  //  Acquire and release
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Get instance for exclusive use by the calling thread,
+  //  waiting until one is available.
+  //-------------------------------------------------------------------
+  public P acquire()
+    throws InterruptedException
+    {
+      permits.acquire();
+      return take();
+    }
+
+  //-------------------------------------------------------------------
+  //  Get instance if one is available, otherwise return null.
+  //-------------------------------------------------------------------
+  public P tryAcquire()
+    {
+      if (!permits.tryAcquire()) return null;
+      return take();
+    }
+
+  //-------------------------------------------------------------------
+  //  Return instance obtained from 'acquire' or 'tryAcquire'.
+  //  It must not be used by the caller afterwards.
+  //-------------------------------------------------------------------
+  public void release(P parser)
+    {
+      parser.resetParser();
+      idle.add(parser);
+      permits.release();
+    }
+
+  //=====================================================================
+  //
+  //  Statistics
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Maximum number of instances.
+  //-------------------------------------------------------------------
+  public int capacity()
+    { return capacity; }
+
+  //-------------------------------------------------------------------
+  //  Number of instances created so far.
+  //-------------------------------------------------------------------
+  public synchronized int created()
+    { return created; }
+
+  //-------------------------------------------------------------------
+  //  Number of instances that can be acquired without waiting.
+  //-------------------------------------------------------------------
+  public int available()
+    { return permits.availablePermits(); }
+
+  //=====================================================================
+  //
+  //  Private
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Take idle instance or create new one. Called with permit held.
+  //-------------------------------------------------------------------
+  private P take()
+    {
+      P parser = idle.poll();
+      if (parser!=null) return parser;
+      try
+      {
+        parser = factory.create();
+        synchronized(this) { created++; }
+        return parser;
+      }
+      finally
+      {
+        if (parser==null) permits.release();
+      }
+    }
+}
@@ -41,6 +41,15 @@
 //           It was, in fact, never used.
 //    150629 Replaced the separate services for predicates by 'acceptPred'
 //           and 'rejectPred'.
+//   Version 1.10
+//    261018 Added versions of terminal services that receive number
+//           of expected text. Pass number of diagnostic name
+//           from Cache to the new Phrase.
+//    261018 Added terminal services for character sets given by bitmap.
+//    261018 Added traced 'cut'.
+//    261018 Statistics in Cache are cleared also when saved Phrases
+//           are kept for incremental reparsing.
+//    261018 Added Cache constructor with rule number.
 //
 //=========================================================================
 
@@ -116,6 +125,8 @@ public class ParserTest extends ParserMemo
       }
 
       begin(c.name,c.diag);
+      current.diagId = c.diagId;
+      current.ruleId = c.ruleId;
       c.save(current);
       if (c.prevpos.get(pos)) c.rescan++;
       else c.prevpos.set(pos);
@@ -139,6 +150,7 @@ public class ParserTest extends ParserMemo
       }
 
       begin("",c.diag);
+      current.diagId = c.diagId;
       c.save(current);
       if (c.prevpos.get(pos)) c.rescan++;
       else c.prevpos.set(pos);
@@ -429,6 +441,247 @@ public class ParserTest extends ParserMemo
     }
 
 
+  //=====================================================================
+  //
+  //  Terminal services with expected text given by its number 'e'
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Execute expression 'c'
+  //-------------------------------------------------------------------
+  protected boolean next(char ch,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.next(ch,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ^'c'
+  //-------------------------------------------------------------------
+  protected boolean nextNot(char ch,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.nextNot(ch,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &'c', !^'c'
+  //-------------------------------------------------------------------
+  protected boolean ahead(char ch,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.ahead(ch,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  protected boolean aheadNotNot(char ch,int e,Cache c)
+    { return ahead(ch,e,c); }
+
+  //-------------------------------------------------------------------
+  //  Execute expression !'c', &^'c'
+  //-------------------------------------------------------------------
+  protected boolean aheadNot(char ch,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.aheadNot(ch,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression "s"
+  //-------------------------------------------------------------------
+  protected boolean next(String s,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.next(s,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &"s"
+  //-------------------------------------------------------------------
+  protected boolean ahead(String s,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.ahead(s,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression !"s"
+  //-------------------------------------------------------------------
+  protected boolean aheadNot(String s,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.aheadNot(s,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression [s]
+  //-------------------------------------------------------------------
+  protected boolean nextIn(String s,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.nextIn(s,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ^[s]
+  //-------------------------------------------------------------------
+  protected boolean nextNotIn(String s,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.nextNotIn(s,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &[s], !^[s]
+  //-------------------------------------------------------------------
+  protected boolean aheadIn(String s,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.aheadIn(s,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  protected boolean aheadNotNotIn(String s,int e,Cache c)
+    { return aheadIn(s,e,c); }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ![s], &^[s]
+  //-------------------------------------------------------------------
+  protected boolean aheadNotIn(String s,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.aheadNotIn(s,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression [a-z]
+  //-------------------------------------------------------------------
+  protected boolean nextIn(char a, char z, int e, Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.nextIn(a,z,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &[a-z]
+  //-------------------------------------------------------------------
+  protected boolean aheadIn(char a, char z, int e, Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.aheadIn(a,z,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ![a-z]
+  //-------------------------------------------------------------------
+  protected boolean aheadNotIn(char a, char z, int e, Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.aheadNotIn(a,z,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression [s] or [a-z] given by bitmap
+  //-------------------------------------------------------------------
+  protected boolean nextIn(long[] set,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.nextIn(set,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ^[s] given by bitmap
+  //-------------------------------------------------------------------
+  protected boolean nextNotIn(long[] set,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.nextNotIn(set,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &[s], !^[s], &[a-z] given by bitmap
+  //-------------------------------------------------------------------
+  protected boolean aheadIn(long[] set,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.aheadIn(set,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  protected boolean aheadNotNotIn(long[] set,int e,Cache c)
+    { return aheadIn(set,e,c); }
+
+  //-------------------------------------------------------------------
+  //  Execute expression ![s], &^[s], ![a-z] given by bitmap
+  //-------------------------------------------------------------------
+  protected boolean aheadNotIn(long[] set,int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.aheadNotIn(set,e);
+      return traceTerm(endpos,succ,c);
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute expression _
+  //-------------------------------------------------------------------
+  protected boolean next(int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.next(e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression &_
+  //-------------------------------------------------------------------
+  protected boolean ahead(int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.ahead(e);
+      return traceTerm(endpos,succ,c);
+    }
+
+  //-------------------------------------------------------------------
+  //  Execute expression !_
+  //-------------------------------------------------------------------
+  protected boolean aheadNot(int e,Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.aheadNot(e);
+      return traceTerm(endpos,succ,c);
+    }
+
+
+  //-------------------------------------------------------------------
+  //  Execute cut
+  //-------------------------------------------------------------------
+  protected boolean cut(Cache c)
+    {
+      int endpos = pos;
+      boolean succ = super.cut();
+      return traceTerm(endpos,succ,c);
+    }
+
+
   //-------------------------------------------------------------------
   //  Trace term
   //-------------------------------------------------------------------
@@ -469,9 +722,26 @@ public class ParserTest extends ParserMemo
     public Cache(final String name,final String diag)
       { super(name,diag); }
 
+    public Cache(final String name,final String diag,int diagId)
+      { super(name,diag,diagId); }
+
+    public Cache(final String name,final String diag,int diagId,int ruleId)
+      { super(name,diag,diagId,ruleId); }
+
     void reset()
       {
         super.reset();
+        clear();
+      }
+
+    void edit()
+      {
+        super.edit();
+        clear();
+      }
+
+    private void clear()
+      {
         calls   = 0;
         rescan  = 0;
         reuse   = 0;
@@ -32,12 +32,35 @@
 //           are preserved and public, plus new method 'errAdd'.
 //    150724 Added 'defAct' to keep deferred actions, and methods
 //           'actAdd', 'actClear', and 'actExec' for handling them.
+//   Version 1.10
+//    261018 Replaced Vector 'rhs' by arrays 'rhsPhr' and 'rhsPos'
+//           allocated on first use. Terminals are kept there only
+//           as (start,end) pairs; their Phrase objects are created
+//           by 'rhsAt' when first requested.
+//    261018 High-water mark keeps numbers of texts in table 'exp'
+//           instead of the texts. The texts are obtained only
+//           in 'errMsg'.
+//    261018 Added 'rhsDrop', used by 'release' of ParserBase.
+//    261018 Added 'far' and 'moveTo' for incremental reparsing.
+//           'start' is no longer final.
+//    261018 Deferred actions of all Phrases are kept in one log
+//           of the parser (class ActLog) instead of a Vector in each
+//           Phrase that had to be copied to the parent on accept.
+//           The Phrase records in 'actMark' where its actions start.
+//    261018 Accepted Phrase records also in 'actEnd' where its actions
+//           end; 'actExec' and 'actClear' use only those actions,
+//           not the actions of Phrases that follow it.
+//    261018 Added primitive value slot 'num' with 'putLong', 'getLong',
+//           'putDouble', 'getDouble', and typed 'get(Class)'.
+//    261018 Added 'ruleId' with 'ruleId()' and 'isA(int)', to identify
+//           the rule by number instead of comparing names.
 //
 //=========================================================================
 
 package mouse.runtime;
 
 import mouse.runtime.Source;
+import java.util.Arrays;
 import java.util.Vector;
 
 
@@ -58,14 +81,29 @@ public class Phrase
 
   final String name;
   final String diag;
-  final int start;
+  int start;               // Changed only by 'moveTo'
   int end;
   boolean success;
-  Vector<Phrase> rhs = new Vector<Phrase>(10,10);
   Object value = null;
+  long num = 0;            // Primitive value: long, or bits of double
   Phrase parent = null;
   Source source;
 
+  //-----------------------------------------------------------------
+  //  Table of texts for failure messages, shared by all Phrases
+  //  of one parser, and number in that table of the text for 'diag'
+  //  (-1 if not yet known).
+  //-----------------------------------------------------------------
+  Expected exp;
+  int diagId = -1;
+
+  //-----------------------------------------------------------------
+  //  Number of the rule that created this Phrase, as in constants
+  //  generated with the parser, or -1 if not created by a rule
+  //  or by a parser generated before version 1.10.
+  //-----------------------------------------------------------------
+  int ruleId = -1;
+
   //-----------------------------------------------------------------
   //  Information about the failure farthest down in the text
   //  encountered while processing this Phrase.
@@ -75,15 +113,44 @@ public class Phrase
   //  - 'hwmExp' identifies the expression(s) that failed at 'hwm'.
   //     There may be several such expressions if 'hwm' was reached
   //     on several attempts. The expressions are identified
-  //     by their diagnostic names.
+  //     by numbers of their diagnostic names in table 'exp'.
+  //     Each number appears only once, in the order of first
+  //     registration. The array is allocated on first use.
+  //  - 'hwmCnt' is the number of elements used in 'hwmExp'.
   //-----------------------------------------------------------------
   int hwm = -1;
-  Vector<String> hwmExp = new Vector<String>();
+  int[] hwmExp = null;
+  int hwmCnt = 0;
+
+  //-----------------------------------------------------------------
+  //  Position after the last character examined while processing
+  //  this Phrase, including lookahead and failed attempts
+  //  (see 'push' in ParserBase). The result of processing
+  //  does not depend on text outside from 'start' to 'far'.
+  //-----------------------------------------------------------------
+  int far;
 
   //-----------------------------------------------------------------
-  //  Deferred actions
+  //  Deferred actions: those in 'log' from position 'actMark'
+  //  up to 'actEnd' were added while processing this Phrase.
+  //  'actEnd' is -1 until the Phrase is accepted: its actions
+  //  are then all from 'actMark' on.
   //-----------------------------------------------------------------
-  Vector<Deferred> defAct = new Vector<Deferred>();
+  ActLog log = null;
+  int actMark = 0;
+  int actEnd = -1;
+
+  //-----------------------------------------------------------------
+  //  Right-hand side: 'rhsSize' items.
+  //  - 'rhsPos' holds start and end of i-th item
+  //     in elements 2*i and 2*i+1.
+  //  - 'rhsPhr' holds Phrase for i-th item, or null if the item
+  //     is a terminal whose Phrase has not yet been requested.
+  //  Both arrays are null until the first item is added.
+  //-----------------------------------------------------------------
+  Phrase[] rhsPhr = null;
+  int[] rhsPos = null;
+  int rhsSize = 0;
 
 
   //===================================================================
@@ -93,12 +160,17 @@ public class Phrase
   //===================================================================
 
   protected Phrase(final String name,final String diag,int start,final Source source)
+    { this(name,diag,start,source,null); }
+
+  Phrase(final String name,final String diag,int start,final Source source,
+         final Expected exp)
     {
       this.name = name;
       this.diag = diag;
       this.start = start;
       this.end = start;
       this.source = source;
+      this.exp = exp;
     }
 
   //===================================================================
@@ -118,6 +190,31 @@ public class Phrase
   public Object get()
     { return value; }
 
+  //-----------------------------------------------------------------
+  //  Get value of type 'type' (for example, 'get(String.class)'),
+  //  without cast in the semantic action.
+  //-----------------------------------------------------------------
+  public <T> T get(Class<T> type)
+    { return type.cast(value); }
+
+  //-----------------------------------------------------------------
+  //  Set and get primitive value.
+  //  The primitive value is kept separately from the Object value,
+  //  so it is not boxed. There is one slot, shared by long and double:
+  //  'getDouble' returns meaningful result only after 'putDouble'.
+  //-----------------------------------------------------------------
+  public void putLong(long v)
+    { num = v; }
+
+  public long getLong()
+    { return num; }
+
+  public void putDouble(double v)
+    { num = Double.doubleToRawLongBits(v); }
+
+  public double getDouble()
+    { return Double.longBitsToDouble(num); }
+
   //-----------------------------------------------------------------
   //  Get text
   //-----------------------------------------------------------------
@@ -148,6 +245,18 @@ public class Phrase
   public boolean isA(String rule)
     { return name.equals(rule); }
 
+  //-------------------------------------------------------------------
+  //  Number of rule that created this Phrase; -1 if none.
+  //-------------------------------------------------------------------
+  public int ruleId()
+    { return ruleId; }
+
+  //-------------------------------------------------------------------
+  //  Was this Phrase created by rule number 'rule'?
+  //-------------------------------------------------------------------
+  public boolean isA(int rule)
+    { return ruleId==rule; }
+
   //-------------------------------------------------------------------
   //  Was this Phrase created by a terminal?
   //-------------------------------------------------------------------
@@ -180,29 +289,41 @@ public class Phrase
   //  of this Phrase.
   //-----------------------------------------------------------------
   public void errAdd(final String expr, int i)
-    { hwmSet(expr,start+i); }
+    { hwmSet(expected().id(expr),start+i); }
 
   //-----------------------------------------------------------------
   //  Clear deferred actions
   //-----------------------------------------------------------------
   public void actClear()
-    { defAct.clear(); }
+    { if (log!=null) log.remove(actMark,actEnd()); }
 
   //-----------------------------------------------------------------
   //  Add deferred action
   //-----------------------------------------------------------------
   public void actAdd(Deferred a)
-    { defAct.add(a); }
+    {
+      if (log==null) log = new ActLog();
+      log.add(a);
+    }
 
   //-----------------------------------------------------------------
   //  Execute deferred actions
   //-----------------------------------------------------------------
   public void actExec()
     {
-      for (Deferred a: defAct) a.exec();
-      defAct.clear();
+      if (log==null) return;
+      int end = Math.min(actEnd(),log.count);
+      for (int i=actMark;i<end;i++)
+        if (log.act[i]!=null) log.act[i].exec();
+      log.remove(actMark,end);
     }
 
+  //-----------------------------------------------------------------
+  //  End of deferred actions in 'log'.
+  //-----------------------------------------------------------------
+  private int actEnd()
+    { return actEnd<0? log.count : actEnd; }
+
 
   //===================================================================
   //
@@ -214,33 +335,33 @@ public class Phrase
   //-----------------------------------------------------------------
   void hwmClear()
     {
-      hwmExp.clear();
+      hwmCnt = 0;
       hwm = -1;
     }
 
   //-----------------------------------------------------------------
   //  Set fresh mark ('what' failed 'where'), discarding any previous.
   //-----------------------------------------------------------------
-  void hwmSet(final String what, int where)
+  void hwmSet(int what, int where)
     {
-      hwmExp.clear();
-      hwmExp.add(what);
+      hwmCnt = 0;
+      hwmAdd(what);
       hwm = where;
     }
 
   //-----------------------------------------------------------------
   //  Add info about 'what' failing at position 'where'.
   //-----------------------------------------------------------------
-  void hwmUpd(final String what,int where)
+  void hwmUpd(int what,int where)
     {
       if (hwm>where) return;   // If 'where' older: forget
       if (hwm<where)           // If 'where' newer: replace
       {
-        hwmExp.clear();
+        hwmCnt = 0;
         hwm = where;
       }
                                   // If same position: add
-      hwmExp.add(what);
+      hwmAdd(what);
     }
 
   //-----------------------------------------------------------------
@@ -251,10 +372,146 @@ public class Phrase
       if (hwm>p.hwm) return;// If p's info older: forget
       if (hwm<p.hwm)        // If p's info  newer: replace
       {
-        hwmExp.clear();
+        hwmCnt = 0;
         hwm = p.hwm;
       }
-      hwmExp.addAll(p.hwmExp);    // If same position: add
+      for (int i=0;i<p.hwmCnt;i++) // If same position: add
+        hwmAdd(p.hwmExp[i]);
+    }
+
+  //-----------------------------------------------------------------
+  //  Get number of diagnostic name in table 'exp'.
+  //-----------------------------------------------------------------
+  int diagId()
+    {
+      if (diagId<0) diagId = expected().id(diag);
+      return diagId;
+    }
+
+  //-----------------------------------------------------------------
+  //  Get i-th item of rhs, creating its Phrase if not yet done.
+  //-----------------------------------------------------------------
+  Phrase rhsAt(int i)
+    {
+      if (i<0 || i>=rhsSize)
+        throw new ArrayIndexOutOfBoundsException(i);
+      Phrase p = rhsPhr[i];
+      if (p==null)
+      {
+        p = new Phrase("","",rhsPos[2*i],source,exp);
+        p.end = rhsPos[2*i+1];
+        p.success = true;
+        p.log = log;
+        p.actMark = 0;                 // Terminal: no actions
+        p.actEnd = 0;
+        rhsPhr[i] = p;
+      }
+      return p;
+    }
+
+  //-----------------------------------------------------------------
+  //  Append Phrase 'p' to rhs.
+  //-----------------------------------------------------------------
+  void rhsAdd(final Phrase p)
+    {
+      rhsGrow(1);
+      rhsPhr[rhsSize] = p;
+      rhsPos[2*rhsSize] = p.start;
+      rhsPos[2*rhsSize+1] = p.end;
+      rhsSize++;
+    }
+
+  //-----------------------------------------------------------------
+  //  Append terminal consuming text from 'start' to 'end' to rhs.
+  //-----------------------------------------------------------------
+  void rhsAddTerm(int start, int end)
+    {
+      rhsGrow(1);
+      rhsPos[2*rhsSize] = start;
+      rhsPos[2*rhsSize+1] = end;
+      rhsSize++;
+    }
+
+  //-----------------------------------------------------------------
+  //  Append rhs of Phrase 'p' to rhs.
+  //-----------------------------------------------------------------
+  void rhsAddAll(final Phrase p)
+    {
+      int n = p.rhsSize;
+      if (n==0) return;
+      rhsGrow(n);
+      System.arraycopy(p.rhsPhr,0,rhsPhr,rhsSize,n);
+      System.arraycopy(p.rhsPos,0,rhsPos,2*rhsSize,2*n);
+      rhsSize += n;
+    }
+
+  //-----------------------------------------------------------------
+  //  Discard rhs.
+  //-----------------------------------------------------------------
+  void rhsClear()
+    {
+      rhsPhr = null;
+      rhsPos = null;
+      rhsSize = 0;
+    }
+
+  //-----------------------------------------------------------------
+  //  Discard items of rhs that end at or before position 'p'.
+  //-----------------------------------------------------------------
+  void rhsDrop(int p)
+    {
+      int n = 0;
+      while (n<rhsSize && rhsPos[2*n+1]<=p) n++;
+      if (n==0) return;
+      System.arraycopy(rhsPhr,n,rhsPhr,0,rhsSize-n);
+      System.arraycopy(rhsPos,2*n,rhsPos,0,2*(rhsSize-n));
+      Arrays.fill(rhsPhr,rhsSize-n,rhsSize,null);
+      rhsSize -= n;
+    }
+
+  //-----------------------------------------------------------------
+  //  Move to position 's' in text from 'src', together with
+  //  Phrases in rhs. (A Phrase may be moved more than once
+  //  if it appears in several rhs; the result is the same.)
+  //-----------------------------------------------------------------
+  void moveTo(int s, final Source src)
+    {
+      int d = s - start;
+      source = src;
+      start = s;
+      end += d;
+      far += d;
+      if (hwm>=0) hwm += d;
+      for (int i=0;i<rhsSize;i++)
+      {
+        rhsPos[2*i] += d;
+        rhsPos[2*i+1] += d;
+        if (rhsPhr[i]!=null) rhsPhr[i].moveTo(rhsPos[2*i],src);
+      }
+    }
+
+  //-----------------------------------------------------------------
+  //  Make room for 'n' more items of rhs.
+  //-----------------------------------------------------------------
+  private void rhsGrow(int n)
+    {
+      int need = rhsSize + n;
+      if (rhsPhr==null)
+      {
+        int cap = need<8? 8 : need;
+        rhsPhr = new Phrase[cap];
+        rhsPos = new int[2*cap];
+        return;
+      }
+      if (need<=rhsPhr.length) return;
+      int cap = 2*rhsPhr.length;
+      if (cap<need) cap = need;
+      Phrase[] phr = new Phrase[cap];
+      int[] ps = new int[2*cap];
+      System.arraycopy(rhsPhr,0,phr,0,rhsSize);
+      System.arraycopy(rhsPos,0,ps,0,2*rhsSize);
+      rhsPhr = phr;
+      rhsPos = ps;
     }
 
 
@@ -271,8 +528,9 @@ public class Phrase
       StringBuilder one = new StringBuilder();
       StringBuilder two = new StringBuilder();
       Vector<String> done = new Vector<String>();
-      for (String s: hwmExp)
+      for (int i=0;i<hwmCnt;i++)
       {
+        String s = expected().text(hwmExp[i]);
         if (done.contains(s)) continue;
         done.add(s);
         if (s.startsWith("not "))
@@ -293,6 +551,33 @@ public class Phrase
         return " not expected " + two.toString().substring(4);
     }
 
+  //-----------------------------------------------------------------
+  //  Add 'what' to 'hwmExp' unless already there.
+  //-----------------------------------------------------------------
+  private void hwmAdd(int what)
+    {
+      for (int i=0;i<hwmCnt;i++)
+        if (hwmExp[i]==what) return;
+      if (hwmExp==null)
+        hwmExp = new int[4];
+      else if (hwmCnt==hwmExp.length)
+      {
+        int[] a = new int[2*hwmCnt];
+        System.arraycopy(hwmExp,0,a,0,hwmCnt);
+        hwmExp = a;
+      }
+      hwmExp[hwmCnt++] = what;
+    }
+
+  //-----------------------------------------------------------------
+  //  Get table of texts, creating private one if none was given.
+  //-----------------------------------------------------------------
+  private Expected expected()
+    {
+      if (exp==null) exp = new Expected(null);
+      return exp;
+    }
+
   //-----------------------------------------------------------------
   //  Convert string to printable and append to StringBuilder.
   //-----------------------------------------------------------------
@@ -319,4 +604,47 @@ public class Phrase
         }
       }
     }
+
+
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //
+  //  Log of deferred actions, shared by all Phrases of one parse.
+  //  Actions are appended in the order they are added.
+  //  Accepting a Phrase leaves its actions in the log, which gives
+  //  the same order as appending them to the actions of the parent.
+  //  Rejecting a Phrase removes them by truncating the log
+  //  at its 'actMark'.
+  //  'actExec' and 'actClear' of an accepted Phrase remove its
+  //  actions from between those of other Phrases; their places
+  //  are left empty (null).
+  //
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+  static class ActLog
+  {
+    Deferred[] act = new Deferred[16];
+    int count = 0;
+
+    void add(Deferred a)
+      {
+        if (count==act.length) act = Arrays.copyOf(act,2*count);
+        act[count++] = a;
+      }
+
+    void truncate(int n)
+      {
+        while (count>n) act[--count] = null;
+      }
+
+    //---------------------------------------------------------------
+    //  Remove actions from n up to m. If they are not the last,
+    //  their places are left empty, so that the positions
+    //  of the following actions do not change.
+    //---------------------------------------------------------------
+    void remove(int n, int m)
+      {
+        if (m>=count) truncate(n);
+        else for (int i=n;i<m;i++) act[i] = null;
+      }
+  }
 }
@@ -22,6 +22,8 @@
 //    090701 License changed by the author to Apache v.2.
 //    090717 Interface 'Parser' renamed to 'CurrentRule'.
 //    090810 Name changed from 'Semantics'.
+//   Version 1.10
+//    261018 Added 'release'.
 //
 //=========================================================================
 
@@ -103,4 +105,17 @@ public class SemanticsBase
   protected String rhsText(int i,int j)
     { return rule.rhsText(i,j); }
 
+  //-------------------------------------------------------------------
+  //  Releases the text up to the end of left-hand side
+  //  (see 'release' in ParserBase). To be called at the end
+  //  of an action, after which the parser will not backtrack
+  //  over the lhs. Allows a parser reading from SourceStream
+  //  to process input of any size in limited memory.
+  //-------------------------------------------------------------------
+  protected void release()
+    {
+      if (rule instanceof ParserBase)
+        ((ParserBase)rule).release(rule.lhs().end);
+    }
+
 }
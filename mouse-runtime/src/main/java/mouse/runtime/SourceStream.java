@@ -0,0 +1,307 @@
+//=========================================================================
+//
+//  Part of PEG parser generator Mouse.
+//
+//  Copyright (C) 2026 by Roman R. Redziejowski (www.romanredz.se).
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//-------------------------------------------------------------------------
+//
+//  Change log
+//   261018 Created for version 1.10.
+//
+//=========================================================================
+
+package mouse.runtime;
+
+import java.io.*;
+import java.nio.charset.*;
+
+
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+//
+//  Wrapper for parser input in the form of a stream of characters
+//  (Reader, InputStream, or file), for input too large to be kept
+//  in memory as one String.
+//
+//  The characters are read when the parser asks for them, and kept
+//  in a window: an array holding the characters from some position
+//  'base' up to the last character read so far. The parser calls
+//  'release(p)' to declare that characters before position p will
+//  not be accessed any more (see 'release' in ParserBase); they are
+//  then removed from the window when space is needed.
+//  Accessing a released character throws Error.
+//
+//  The parser does not call 'end', which has to read the whole input.
+//  It uses 'available' instead.
+//
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+public class SourceStream implements Source
+{
+  //=====================================================================
+  //
+  //  Data.
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  The input and default size of window.
+  //-------------------------------------------------------------------
+  private Reader reader;
+  private static final int WINDOW = 65536;
+
+  //-------------------------------------------------------------------
+  //  The window: characters from position 'base' through base+count-1
+  //  are in buf[0] through buf[count-1].
+  //-------------------------------------------------------------------
+  private char[] buf;
+  private int base = 0;
+  private int count = 0;
+
+  //-------------------------------------------------------------------
+  //  Characters before 'low' may be removed from the window.
+  //-------------------------------------------------------------------
+  private int low = 0;
+
+  //-------------------------------------------------------------------
+  //  End of input reached?
+  //-------------------------------------------------------------------
+  private boolean eof = false;
+
+  //-------------------------------------------------------------------
+  //  For 'where': number of newlines before 'base',
+  //  and position of the last of them (-1 if none).
+  //-------------------------------------------------------------------
+  private int lines = 0;
+  private int lastNl = -1;
+
+  //-------------------------------------------------------------------
+  //  Success indicator.
+  //-------------------------------------------------------------------
+  private boolean created = false;
+
+
+  //=====================================================================
+  //
+  //  Constructors.
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Wraps 'reader', with initial window of 'size' characters.
+  //  The window grows if the parser needs more characters
+  //  than there is space for.
+  //-------------------------------------------------------------------
+  public SourceStream(final Reader reader, int size)
+    {
+      this.reader = reader;
+      buf = new char[size<16? 16 : size];
+      created = true;
+    }
+
+  public SourceStream(final Reader reader)
+    { this(reader,WINDOW); }
+
+  //-------------------------------------------------------------------
+  //  Wraps 'in', decoded using character set 'cs'.
+  //-------------------------------------------------------------------
+  public SourceStream(final InputStream in, final Charset cs)
+    { this(new InputStreamReader(in,cs),WINDOW); }
+
+  //-------------------------------------------------------------------
+  //  Wraps the file identified by 'fileName',
+  //  decoded using default character encoding (as SourceFile).
+  //-------------------------------------------------------------------
+  public SourceStream(final String fileName)
+    {
+      buf = new char[WINDOW];
+      try
+      {
+        reader = new InputStreamReader
+                   (new FileInputStream(fileName),Charset.defaultCharset());
+        created = true;
+      }
+      catch (FileNotFoundException e)
+      { System.err.println("File '" + fileName + "' was not found."); }
+    }
+
+
+  //=====================================================================
+  //
+  //  Interface methods.
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Is the wrapper correctly initialized?
+  //-------------------------------------------------------------------
+  public boolean created()
+    { return created; }
+
+  //-------------------------------------------------------------------
+  //  Returns end position. Reads all remaining input.
+  //-------------------------------------------------------------------
+  public int end()
+    { return available(Integer.MAX_VALUE); }
+
+  //-------------------------------------------------------------------
+  //  Returns character at position p.
+  //-------------------------------------------------------------------
+  public char at(int p)
+    {
+      check(p,p+1);
+      return buf[p-base];
+    }
+
+  //-------------------------------------------------------------------
+  //  Returns characters at positions p through q-1.
+  //-------------------------------------------------------------------
+  public String at(int p, int q)
+    {
+      check(p,q);
+      return new String(buf,p-base,q-p);
+    }
+
+  //-------------------------------------------------------------------
+  //  Are characters starting at position p the same as those of s?
+  //-------------------------------------------------------------------
+  public boolean matches(int p, final String s)
+    {
+      int n = s.length();
+      if (available(p+n)<p+n) return false;
+      check(p,p+n);
+      int k = p-base;
+      for (int i=0;i<n;i++)
+        if (buf[k+i]!=s.charAt(i)) return false;
+      return true;
+    }
+
+  //-------------------------------------------------------------------
+  //  Describes position p in terms of line and column number,
+  //  as SourceFile. Lines and columns are numbered starting with 1.
+  //  Position in released text is described by its number.
+  //-------------------------------------------------------------------
+  public String where(int p)
+    {
+      if (p<base) return "character " + (p+1);
+      available(p);
+      int ln = lines + 1;
+      int ls = lastNl;
+      int stop = Math.min(p,base+count);
+      for (int i=base;i<stop;i++)
+        if (buf[i-base]=='\n')
+        {
+          ln++;
+          ls = i;
+        }
+      return ("line " + ln + " col. " + (p-ls));
+    }
+
+
+  //=====================================================================
+  //
+  //  Stream-specific methods.
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Make available characters before position q, reading more input
+  //  if necessary and possible. Return the position after the last
+  //  available character: at least q unless the input ends before q.
+  //-------------------------------------------------------------------
+  public int available(int q)
+    {
+      while (base+count<q && !eof)
+        fill();
+      return base+count;
+    }
+
+  //-------------------------------------------------------------------
+  //  Allow characters before position p to be removed.
+  //-------------------------------------------------------------------
+  public void release(int p)
+    {
+      if (p>low) low = p;
+    }
+
+  //-------------------------------------------------------------------
+  //  Position of the first character still in the window.
+  //-------------------------------------------------------------------
+  public int base()
+    { return base; }
+
+  //-------------------------------------------------------------------
+  //  Close the input.
+  //-------------------------------------------------------------------
+  public void close()
+    {
+      try
+      { reader.close(); }
+      catch (IOException e)
+      {}
+    }
+
+
+  //=====================================================================
+  //
+  //  Private methods.
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Make sure that characters p through q-1 are in the window.
+  //-------------------------------------------------------------------
+  private void check(int p, int q)
+    {
+      if (p<base)
+        throw new Error("Character at position " + p + " was released");
+      if (available(q)<q)
+        throw new StringIndexOutOfBoundsException(q-1);
+    }
+
+  //-------------------------------------------------------------------
+  //  Read more characters, making space in the window
+  //  by removing released characters or by enlarging it.
+  //-------------------------------------------------------------------
+  private void fill()
+    {
+      if (count==buf.length)
+      {
+        int drop = Math.min(low,base+count) - base;
+        if (drop>0)
+        {
+          for (int i=0;i<drop;i++)
+            if (buf[i]=='\n')
+            {
+              lines++;
+              lastNl = base+i;
+            }
+          System.arraycopy(buf,drop,buf,0,count-drop);
+          base += drop;
+          count -= drop;
+        }
+        if (count>buf.length/2)
+        {
+          char[] b = new char[2*buf.length];
+          System.arraycopy(buf,0,b,0,count);
+          buf = b;
+        }
+      }
+
+      try
+      {
+        int n = reader.read(buf,count,buf.length-count);
+        if (n<0) eof = true;
+        else count += n;
+      }
+      catch (IOException e)
+      { throw new Error("Error reading input: " + e.getMessage(),e); }
+    }
+}
@@ -62,6 +62,29 @@
 //           'acceptAnd', 'acceptNot', 'rejectAnd', 'rejectNot'.
 //           Do not generate 'boolReject'.
 //    150724 Generate call to 'closeParser' instead of 'failure'.
+//   Version 1.10
+//    261018 Generate list of texts for failure messages ('expectedList')
+//           and pass their numbers to terminal services, 'begin',
+//           and constructors of Cache objects.
+//    261018 Added option -F.
+//    261018 Generate bitmaps for character classes and ranges
+//           ('$Set' constants) and pass them to terminal services.
+//    261018 Added option -I.
+//    261018 Generate call to 'cut' for cut expression, and catch
+//           CutFailure in 'parse' if the grammar contains cut.
+//    261018 Added option -V to declare value types of rules
+//           for the semantics skeleton.
+//    261018 Added option -E.
+//    261018 Generate class of constants numbering the rules ('<parser>Rules')
+//           and table of rules ('ruleNames', 'ruleDiags') passed to
+//           'setRules'. Rules begin with 'beginRule(number)', and Cache
+//           objects receive the number.
+//    261018 Added option -m: with -M, generate Cache objects only
+//           for procedures that the profile shows worth memoizing,
+//           and report the predicted memo size.
+//    261018 With -I, a state entered from the preceding code is entered
+//           by explicit jump instead of falling through ('iterEnter').
+//    261018 Generated files are stamped 'Mouse 1.10'.
 //
 //=========================================================================
 
@@ -70,12 +93,17 @@ package mouse;
 import mouse.peg.PEG;
 import mouse.peg.Expr;
 import mouse.peg.Action;
+import mouse.runtime.ParserMemo;
 import mouse.runtime.SourceFile;
 import mouse.utility.CommandArgs;
 import mouse.utility.Convert;
 import mouse.utility.LineWriter;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.TimeZone;
 import java.util.Vector;
@@ -116,6 +144,10 @@ import java.text.SimpleDateFormat;
 //       The file contains definition of Java class <parser>.
 //       If target directory already contains a file "<parser<.java",
 //       the file is replaced without a warning,
+//       The tool generates also a file "<parser>Rules.java" containing
+//       class <parser>Rules that defines for each rule an int constant,
+//       named as the rule, with the number identifying the rule
+//       (see Phrase.ruleId and Phrase.isA(int)).
 //
 //    -S <semantics>
 //       Indicates that semantic actions are methods in the Java class <semantics>.
@@ -139,11 +171,60 @@ import java.text.SimpleDateFormat;
 //       If target directory already contains a file "<semantics>.java",
 //       the tool is not executed.
 //
+//    -V <type>=<rules>
+//       Declares that semantic values of rules listed in <rules>,
+//       separated by commas, are of type <type>. Can be repeated.
+//       Used only in the skeleton generated with -s: semantic procedures
+//       of these rules set value of that type. For types 'long', 'int',
+//       'short', 'byte' and 'char' they use the primitive slot of Phrase
+//       as long ('putLong', to be read by 'getLong' and cast), and for
+//       'double' and 'float' as double ('putDouble', 'getDouble');
+//       for other types, 'put', to be read by 'get(<type>.class)'
+//       ('boolean' is boxed as Boolean).
+//
 //    -M Generate memoizing version of the parser.
 //
+//    -m <profile>
+//       Used with -M to memoize only the procedures that need it.
+//       The <profile> is a CSV file written by TestParser with options
+//       -d (or -D) and -C, after running the test version of the parser
+//       on typical input. A procedure is memoized if at least
+//       MEMO_RATE percent of its calls were at a position where
+//       it was called before (rescan or reuse); other procedures are
+//       generated as without -M. The tool reports the number
+//       of memoized procedures and the predicted memo size: the largest
+//       number of results for one file that full memoization
+//       (see 'setMemo' in ParserMemo) would keep, and estimated bytes.
+//       Optional.
+//
 //    -T Generate instrumented ('test') version of the parser.
 //
-//       (Options -M and -T are mutually exclusive.)
+//    -E Generate event-streaming version of the parser.
+//       The parser does not build Phrases for semantic actions.
+//       Instead, it reports rules and tokens it recognizes to a Listener
+//       (see ParserEvents) as they become final. Semantic actions are
+//       not called; the grammar must not contain boolean actions.
+//       Option -s is ignored.
+//
+//       (Options -M, -T and -E are mutually exclusive.
+//       Option -E cannot be combined with -F.)
+//
+//    -F Generate parser that first tries to parse the input without
+//       keeping information needed for error messages. Only if this
+//       fails, it parses the input again with that information kept,
+//       so that the error messages are the same as without -F.
+//       Note that semantic actions (and 'init' of semantics) are executed
+//       again in the second attempt, and that semantic actions called
+//       in the first attempt see no error information.
+//
+//    -I Generate iterative version of the parser.
+//       Each parsing procedure is generated as a method that can be
+//       suspended when it calls another procedure and resumed when
+//       that procedure returns. The calls are run by method 'run'
+//       using an explicit stack in the runtime (see ParserBase),
+//       so the depth of nesting in the input is not limited
+//       by the size of Java stack. The resulting calls to semantic
+//       actions and the Phrase trees are the same as without -I.
 //
 //
 //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
@@ -166,8 +247,28 @@ public class Generate
   String packName;   // Package name
   String runName;    // Runtime package name
   boolean memo;      // Generate memo version?
+  String profName;   // Profile file from -m
   boolean test;      // Generate test version?
   boolean skel;      // Generate semantics skeleton?
+  boolean fast;      // Generate first attempt without error info?
+  boolean iter;      // Generate iterative version?
+  boolean events;    // Generate event-streaming version?
+  boolean cut;       // Grammar contains cut?
+  Hashtable<String,String> valType = new Hashtable<String,String>();
+                     // Value types of rules from -V
+
+  //-------------------------------------------------------------------
+  //  Profile from -m: for each file in it, numbers of calls, rescans,
+  //  and reuses of each procedure, and names of procedures to memoize
+  //  (null if all are memoized).
+  //-------------------------------------------------------------------
+  Vector<Hashtable<String,long[]>> profile = new Vector<Hashtable<String,long[]>>();
+  HashSet<String> memoProcs;
+
+  //-------------------------------------------------------------------
+  //  Percentage of repeated calls that makes procedure memoized.
+  //-------------------------------------------------------------------
+  static final int MEMO_RATE = 10;
 
   //-------------------------------------------------------------------
   //  Output.
@@ -189,6 +290,27 @@ public class Generate
   //-------------------------------------------------------------------
   String cache = "";
 
+  //-------------------------------------------------------------------
+  //  Texts for failure messages and their numbers.
+  //-------------------------------------------------------------------
+  Vector<String> expTexts = new Vector<String>();
+  Hashtable<String,Integer> expIds = new Hashtable<String,Integer>();
+
+  //-------------------------------------------------------------------
+  //  Bitmaps for character classes and ranges, their descriptions
+  //  (for comments), and numbers identified by the descriptions.
+  //  Constant '$Setn' is generated for bitmap number n.
+  //-------------------------------------------------------------------
+  Vector<long[]> setBits = new Vector<long[]>();
+  Vector<String> setTexts = new Vector<String>();
+  Hashtable<String,Integer> setIds = new Hashtable<String,Integer>();
+
+  //-------------------------------------------------------------------
+  //  Bitmaps are generated only for sets of characters below this.
+  //  Larger sets are tested without bitmap.
+  //-------------------------------------------------------------------
+  static final int SET_LIMIT = 0x800;
+
   //-------------------------------------------------------------------
   //  Visitors.
   //-------------------------------------------------------------------
@@ -210,6 +332,7 @@ public class Generate
   String procName;   // Name of procedure being generated
   int exprNum;       // Number within containing Rule
   int done = 0;      // Count of created procedures
+  int label;         // Last state number in iterative procedure
 
 
   //=====================================================================
@@ -240,8 +363,8 @@ public class Generate
       //---------------------------------------------------------------
       CommandArgs cmd = new CommandArgs
              (argv,         // arguments to parse
-              "MTs",        // options without argument
-              "GPSDpr",     // options with argument
+              "MTsFIE",     // options without argument
+              "GPSDprVm",   // options with argument
                0,0);        // no positional arguments
       if (cmd.nErrors()>0) return;
 
@@ -256,7 +379,25 @@ public class Generate
       runName  = cmd.optArg('r');
       test = cmd.opt('T');
       memo = cmd.opt('M');
+      profName = cmd.optArg('m');
       skel = cmd.opt('s');
+      fast = cmd.opt('F');
+      iter = cmd.opt('I');
+      events = cmd.opt('E');
+
+      for (String v: cmd.optArgs('V'))
+      {
+        int eq = v.indexOf('=');
+        if (eq<=0 || eq==v.length()-1)
+        {
+          System.err.println("Invalid -V " + v + "; specify -V <type>=<rules>.");
+          errors = true;
+          continue;
+        }
+        String type = v.substring(0,eq).trim();
+        for (String r: v.substring(eq+1).split(","))
+          valType.put(r.trim(),type);
+      }
 
       if (gramName==null)
       {
@@ -283,6 +424,21 @@ public class Generate
         }
       }
 
+     if (events && skel)
+      {
+        skel = false;
+        System.err.println("Option -s ignored because -E specified.");
+      }
+
+     if (!skel && !valType.isEmpty())
+        System.err.println("Option -V ignored because no skeleton is generated.");
+
+     if (profName!=null && !memo)
+      {
+        profName = null;
+        System.err.println("Option -m ignored because -M not specified.");
+      }
+
       if (dirName==null)
         dirName = "";
       else
@@ -306,8 +462,25 @@ public class Generate
         errors = true;
       }
 
+      if (events & (memo | test))
+      {
+        System.err.println("Option -E cannot be combined with -M or -T.");
+        errors = true;
+      }
+
+      if (events & fast)
+      {
+        System.err.println("Option -E cannot be combined with -F.");
+        errors = true;
+      }
+
       if (errors) return;
 
+      //---------------------------------------------------------------
+      //  Read profile and choose procedures to memoize.
+      //---------------------------------------------------------------
+      if (profName!=null && !readProfile()) return;
+
       //---------------------------------------------------------------
       //  Parse the grammar and eliminate duplicate expressions.
       //---------------------------------------------------------------
@@ -318,6 +491,26 @@ public class Generate
       if (peg.notWF>0) return;
       peg.compact();
 
+      //---------------------------------------------------------------
+      //  Event-streaming parser does not call semantic actions.
+      //---------------------------------------------------------------
+      if (events)
+      {
+        for (Expr.Rule rule: peg.rules)
+          for (int i=0;i<rule.rhs.length;i++)
+          {
+            if (rule.onSucc[i]!=null && rule.onSucc[i].and)
+            {
+              System.err.println("Rule " + rule.name + " has boolean action; "
+                                 + "not allowed with -E.");
+              errors = true;
+            }
+            rule.onSucc[i] = null;
+            rule.onFail[i] = null;
+          }
+        if (errors) return;
+      }
+
       //---------------------------------------------------------------
       //  Get full path to grammar file, ready to include in comment.
       //---------------------------------------------------------------
@@ -334,6 +527,7 @@ public class Generate
       //  Generate parser.
       //---------------------------------------------------------------
       generate();
+      genRules();
 
       //---------------------------------------------------------------
       //  If requested, generate semantics skeleton.
@@ -361,6 +555,13 @@ public class Generate
       for (int i=0;i<peg.terms.length;i++)
         peg.terms[i].name = "$Term" + i;
 
+      //---------------------------------------------------------------
+      //  Find if there is a cut.
+      //---------------------------------------------------------------
+      cut = false;
+      for (Expr e: peg.terms)
+        if (e instanceof Expr.Cut) cut = true;
+
 
       //---------------------------------------------------------------
       //  Create header.
@@ -368,8 +569,9 @@ public class Generate
       String    basePars = runName + ".ParserBase";
       if (memo) basePars = runName + ".ParserMemo";
       if (test) basePars = runName + ".ParserTest";
+      if (events) basePars = runName + ".ParserEvents";
 
-      out.BOX("This file was generated by Mouse 1.9 at " +
+      out.BOX("This file was generated by Mouse 1.10 at " +
                date + " GMT\nfrom grammar '" + gramPath + "'.");
       out.line("");
 
@@ -397,15 +599,34 @@ public class Generate
       out.line("    super.sem = sem;");
       if (memo | test)
         out.line("    caches = cacheList;");
+      out.line("    setExpected(expectedList);");
+      out.line("    setRules(ruleNames,ruleDiags);");
       out.line("  }");
       out.line("");
 
       out.box("Run the parser");
+      String start = iter? "run($Proc_" + peg.rules[0].name + ")"
+                         : peg.rules[0].name + "()";
       out.line("public boolean parse(Source src)");
       out.line("  {");
-      out.line("    super.init(src);");
-      out.line("    sem.init();");
-      out.line("    boolean result = " + peg.rules[0].name + "();");
+      if (fast)
+      {
+        out.line("    super.init(src,false);");
+        out.line("    sem.init();");
+        startCall("    ",start,true);
+        out.line("    if (!result) // Repeat to obtain error information");
+        out.line("    {");
+        out.line("      super.init(src,true);");
+        out.line("      sem.init();");
+        startCall("      ",start,false);
+        out.line("    }");
+      }
+      else
+      {
+        out.line("    super.init(src);");
+        out.line("    sem.init();");
+        startCall("    ",start,true);
+      }
       out.line("    closeParser(result);");
       out.line("    return result;");
       out.line("  }");
@@ -428,20 +649,25 @@ public class Generate
         exprNum = 0;
 
         out.Box(Convert.toComment(rule.asString()));
+
+        if (iter)
+        {
+          iterRule(rule);
+          createSubs();
+          continue;
+        }
+
         out.line("private boolean " + rule.name + "()");
         out.indent();
         out.line("{");
         out.indent();
-        if (memo | test)
+        if (memoized(rule.name))
         {
           out.line("if (saved(" + rule.name + ")) return reuse();");
           if (test) cache = rule.name;
         }
-        else if (rule.diagName==null)
-          out.line("begin(\"" + rule.name + "\");");
         else
-          out.line("begin(\"" + rule.name + "\",\""
-                   + Convert.toStringLit(rule.diagName) + "\");");
+          out.line(begin(rule));
 
         //-------------------------------------------------------------
         //  Special case: single expression on right-hand side
@@ -515,18 +741,24 @@ public class Generate
         out.line("");
 
         for (Expr.Rule rule: peg.rules)
-          out.line("final Cache " + rule.name + " = new Cache(\""
-                    + rule.name + "\",\""
-                    + Convert.toStringLit(diagName(rule)) + "\");") ;
+          if (memoized(rule.name))
+            out.line("final Cache " + rule.name + " = new Cache(\""
+                      + rule.name + "\",\""
+                      + Convert.toStringLit(diagName(rule)) + "\","
+                      + expected(diagName(rule)) + ","
+                      + ruleId(rule) + ");") ;
 
         out.line("");
 
         for (Expr expr: subs)
-          if (isPred(expr))
+          if (!memoized(expr.name))
+            continue;
+          else if (isPred(expr))
           {
             out.line("final Cache " + expr.name + " = new Cache(\""
                       + expr.name + "\",\""
-                      + Convert.toStringLit(diagPred(expr)) + "\"); // "
+                      + Convert.toStringLit(diagPred(expr)) + "\","
+                      + expected(diagPred(expr)) + "); // "
                       + Convert.toComment(expr.asString()) );
           }
           else
@@ -558,8 +790,9 @@ public class Generate
       {
         Vector<Expr> temp = new Vector<Expr>();
         for (Expr.Rule r: peg.rules)
-          temp.add(r);
-        temp.addAll(subs);
+          if (memoized(r.name)) temp.add(r);
+        for (Expr e: subs)
+          if (memoized(e.name)) temp.add(e);
 
         if (test)
           for (Expr t: peg.terms)
@@ -584,13 +817,131 @@ public class Generate
 
           sb.append(name + ",");
         }
-        sb.deleteCharAt(sb.length()-1);
-        out.line(sb.toString());
+        if (sb.length()>0)
+        {
+          sb.deleteCharAt(sb.length()-1);
+          out.line(sb.toString());
+        }
 
         out.undent();
         out.line("};");
       }
 
+      //---------------------------------------------------------------
+      //  If iterative version:
+      //  create procedure numbers and the procedure to run them.
+      //---------------------------------------------------------------
+      if (iter)
+      {
+        Vector<Expr> procs = new Vector<Expr>();
+        for (Expr.Rule r: peg.rules)
+          procs.add(r);
+        procs.addAll(subs);
+
+        out.line("");
+        out.BOX("Iterative execution");
+        out.line("");
+        out.box("Procedure numbers");
+        out.line("");
+        for (int i=0;i<procs.size();i++)
+          out.line("static final int $Proc_" + procs.elementAt(i).name + " = " + i + ";");
+
+        out.line("");
+        out.box("Run procedure number 'proc' and the procedures it calls");
+        out.line("private boolean run(int proc)");
+        out.line("  {");
+        out.line("    int base = enter(proc);");
+        out.line("    while (depth()>base)");
+        out.line("    {");
+        out.line("      int at = frameAt();");
+        out.line("      switch (frameProc())");
+        out.line("      {");
+        for (Expr e: procs)
+          out.line("        case $Proc_" + e.name + ": " + e.name + "(at); break;");
+        out.line("      }");
+        out.line("    }");
+        out.line("    return returned;");
+        out.line("  }");
+      }
+
+      //---------------------------------------------------------------
+      //  Create bitmaps for character classes and ranges.
+      //---------------------------------------------------------------
+      if (setBits.size()>0)
+      {
+        out.line("");
+        out.BOX("Character sets");
+        out.line("");
+        for (int i=0;i<setBits.size();i++)
+        {
+          long[] bits = setBits.elementAt(i);
+          out.line("// " + Convert.toComment(setTexts.elementAt(i)));
+          StringBuilder sb = new StringBuilder();
+          sb.append("static final long[] $Set" + i + " = {");
+          for (int j=0;j<bits.length;j++)
+          {
+            if (j>0) sb.append(",");
+            if (j>0 && j%3==0)
+            {
+              out.line(sb.toString());
+              sb = new StringBuilder("    ");
+            }
+            sb.append(String.format("0x%016xL",bits[j]));
+          }
+          sb.append("};");
+          out.line(sb.toString());
+        }
+      }
+
+      //---------------------------------------------------------------
+      //  Create list of texts for failure messages.
+      //---------------------------------------------------------------
+      out.line("");
+      out.BOX("Texts for failure messages");
+      out.line("");
+      out.line("static final String[] expectedList =");
+      out.line("{");
+      out.indent();
+      int[] ruleDiags = new int[peg.rules.length];
+      for (int i=0;i<peg.rules.length;i++)
+        ruleDiags[i] = expected(diagText(peg.rules[i]));
+      for (int i=0;i<expTexts.size();i++)
+        out.line("\"" + Convert.toStringLit(expTexts.elementAt(i)) + "\""
+                 + (i<expTexts.size()-1? "," : "") + " // " + i);
+      out.undent();
+      out.line("};");
+
+      //---------------------------------------------------------------
+      //  Create table of rules: names and numbers of diagnostic names.
+      //---------------------------------------------------------------
+      out.line("");
+      out.BOX("Rules");
+      out.line("");
+      out.line("static final String[] ruleNames =");
+      out.line("{");
+      out.indent();
+      for (int i=0;i<peg.rules.length;i++)
+        out.line("\"" + peg.rules[i].name + "\""
+                 + (i<peg.rules.length-1? "," : "") + " // " + i);
+      out.undent();
+      out.line("};");
+      out.line("");
+      out.line("static final int[] ruleDiags =");
+      out.line("{");
+      out.indent();
+      StringBuilder sb = new StringBuilder();
+      for (int i=0;i<ruleDiags.length;i++)
+      {
+        sb.append(ruleDiags[i] + (i<ruleDiags.length-1? "," : ""));
+        if (sb.length()>60 || i==ruleDiags.length-1)
+        {
+          out.line(sb.toString());
+          sb = new StringBuilder();
+        }
+      }
+      out.undent();
+      out.line("};");
+
       //---------------------------------------------------------------
       //  Terminate the parser and close output.
       //---------------------------------------------------------------
@@ -602,6 +953,208 @@ public class Generate
       System.out.println(subs.size()  + " unnamed");
       System.out.println(peg.terms.length + " terminals");
 
+      if (memoProcs!=null) reportMemo();
+
+    }
+
+
+  //=====================================================================
+  //
+  //  Profile-guided memoization (option -m)
+  //
+  //=====================================================================
+  //-------------------------------------------------------------------
+  //  Is procedure 'name' to be generated with Cache?
+  //-------------------------------------------------------------------
+  boolean memoized(final String name)
+    { return test || memo && (memoProcs==null || memoProcs.contains(name)); }
+
+  //-------------------------------------------------------------------
+  //  Read profile from file 'profName' and fill 'memoProcs'.
+  //  The detail rows have name in the first column, an empty
+  //  second column (and third if TestParser had -t), followed by
+  //  calls, ok, fail, back, rescan, reuse, ... ; the totals row
+  //  of each file, with size in the second column, precedes its
+  //  detail rows. Other rows are ignored.
+  //  Returns false after printing message if not successful.
+  //-------------------------------------------------------------------
+  boolean readProfile()
+    {
+      Hashtable<String,long[]> file = null;
+      Hashtable<String,long[]> sums = new Hashtable<String,long[]>();
+      try
+      {
+        BufferedReader in = new BufferedReader(new FileReader(profName));
+        try
+        {
+          String line;
+          while ((line = in.readLine())!=null)
+          {
+            Vector<String> cols = csvSplit(line);
+            if (cols.size()<3) continue;
+            if (cols.elementAt(1).length()>0)   // Totals row: new file
+            {
+              file = null;
+              continue;
+            }
+            int k = cols.elementAt(2).length()>0? 2 : 3;
+            if (cols.size()<k+6) continue;
+            long[] n = new long[3];
+            try
+            {
+              n[0] = Long.parseLong(cols.elementAt(k));
+              n[1] = Long.parseLong(cols.elementAt(k+4));
+              n[2] = Long.parseLong(cols.elementAt(k+5));
+            }
+            catch (NumberFormatException e)
+            { continue; }
+            if (file==null)
+            {
+              file = new Hashtable<String,long[]>();
+              profile.add(file);
+            }
+            String name = cols.elementAt(0);
+            add(file,name,n);
+            add(sums,name,n);
+          }
+        }
+        finally
+        { in.close(); }
+      }
+      catch (IOException e)
+      {
+        System.err.println("Error reading profile '" + profName + "' " + e.getMessage());
+        return false;
+      }
+
+      if (profile.isEmpty())
+      {
+        System.err.println("Profile '" + profName + "' has no statistics of procedures;");
+        System.err.println("write it with TestParser options -d and -C.");
+        return false;
+      }
+
+      memoProcs = new HashSet<String>();
+      for (String name: sums.keySet())
+      {
+        long[] n = sums.get(name);
+        if (n[0]>0 && 100*(n[1]+n[2])>=MEMO_RATE*n[0])
+          memoProcs.add(name);
+      }
+      return true;
+    }
+
+  //-------------------------------------------------------------------
+  //  Add counts 'n' for 'name' in 'table'.
+  //-------------------------------------------------------------------
+  private static void add(Hashtable<String,long[]> table, String name, long[] n)
+    {
+      long[] t = table.get(name);
+      if (t==null)
+        table.put(name,n.clone());
+      else
+        for (int i=0;i<n.length;i++)
+          t[i] += n[i];
+    }
+
+  //-------------------------------------------------------------------
+  //  Split CSV 'line' into columns, removing quotes.
+  //-------------------------------------------------------------------
+  private static Vector<String> csvSplit(final String line)
+    {
+      Vector<String> cols = new Vector<String>();
+      StringBuilder sb = new StringBuilder();
+      boolean quoted = false;
+      for (int i=0;i<line.length();i++)
+      {
+        char c = line.charAt(i);
+        if (quoted)
+        {
+          if (c!='"') sb.append(c);
+          else if (i+1<line.length() && line.charAt(i+1)=='"')
+          {
+            sb.append(c);
+            i++;
+          }
+          else quoted = false;
+        }
+        else if (c=='"') quoted = true;
+        else if (c==',')
+        {
+          cols.add(sb.toString().trim());
+          sb = new StringBuilder();
+        }
+        else sb.append(c);
+      }
+      cols.add(sb.toString().trim());
+      return cols;
+    }
+
+  //-------------------------------------------------------------------
+  //  Report memoized procedures and predicted memo size: the largest
+  //  number of distinct positions where memoized procedures
+  //  were called in one file of the profile.
+  //-------------------------------------------------------------------
+  void reportMemo()
+    {
+      Vector<String> procs = new Vector<String>();
+      for (Expr.Rule r: peg.rules)
+        if (memoized(r.name)) procs.add(r.name);
+      for (Expr e: subs)
+        if (memoized(e.name)) procs.add(e.name);
+
+      long results = 0;
+      for (Hashtable<String,long[]> file: profile)
+      {
+        long r = 0;
+        for (String name: procs)
+        {
+          long[] n = file.get(name);
+          if (n!=null) r += n[0]-n[1]-n[2];
+        }
+        if (r>results) results = r;
+      }
+
+      System.out.println(procs.size() + " memoized of "
+                         + (peg.rules.length+subs.size()) + " procedures");
+      System.out.println("predicted memo: " + results + " results, about "
+                         + (results*ParserMemo.ENTRY_BYTES+1023)/1024 + " KB");
+    }
+
+
+  //=====================================================================
+  //
+  //  Generate the class of rule numbers
+  //
+  //=====================================================================
+
+  void genRules()
+    {
+      out = new LineWriter(dirName + parsName + "Rules.java");
+
+      out.BOX("This file was generated by Mouse 1.10 at " +
+               date + " GMT\nfrom grammar '" + gramPath + "'.");
+      out.line("");
+
+      if ( packName!=null)
+      {
+        out.line("package " + packName + ";");
+        out.line("");
+      }
+
+      out.box("Numbers of rules of " + parsName + ",\n"
+              + "as returned by Phrase.ruleId().");
+      out.line("public final class " + parsName + "Rules");
+      out.line("{");
+      out.indent();
+      for (int i=0;i<peg.rules.length;i++)
+        out.line("public static final int " + peg.rules[i].name + " = " + i + ";");
+      out.line("");
+      out.line("private " + parsName + "Rules()");
+      out.line("  {}");
+      out.undent();
+      out.line("}");
+      out.close();
     }
 
 
@@ -621,7 +1174,7 @@ public class Generate
       //---------------------------------------------------------------
       //  Create header.
       //---------------------------------------------------------------
-      out.BOX("This skeleton was generated by Mouse 1.9 at " + date + " GMT\n" +
+      out.BOX("This skeleton was generated by Mouse 1.10 at " + date + " GMT\n" +
                "from grammar '" + gramPath + "'.");
       out.line("");
 
@@ -641,9 +1194,18 @@ public class Generate
       //---------------------------------------------------------------
       Vector<Action> actions  = new Vector<Action>();
       Hashtable<String,String> comments = new Hashtable<String,String>();
+      Hashtable<String,String> types = new Hashtable<String,String>();
+
+      Hashtable<String,String> undefined = new Hashtable<String,String>(valType);
+      for (Expr.Rule rule: peg.rules)
+        undefined.remove(rule.name);
+      for (String r: undefined.keySet())
+        System.err.println("Warning: rule '" + r + "' in -V is not defined.");
 
       for (Expr.Rule rule: peg.rules)
       {
+        String type = valType.get(rule.name);
+        if (type==null) type = "";
         for (int i=0;i<rule.rhs.length;i++)
         {
           if (rule.onSucc[i]!=null)
@@ -655,10 +1217,15 @@ public class Generate
             {
               actions.add(act);
               comments.put(act.name,comment);
+              types.put(act.name,type);
             }
 
             else
+            {
               comments.put(act.name,found + "\n" + comment);
+              if (!type.equals(types.get(act.name)))
+                types.put(act.name,"");  // Different types: none
+            }
           }
 
           if (rule.onFail[i]!=null)
@@ -684,9 +1251,12 @@ public class Generate
       for (int i=0;i<actions.size();i++)
       {
         Action act = actions.elementAt(i);
-        out.box(comments.get(act.name));
+        String type = types.get(act.name);
+        if (type==null) type = "";
+        out.box(comments.get(act.name) + (type.isEmpty()? "" : "\nValue: " + type));
         out.line((act.and? "boolean " : "void ") + act.name + "()");
-        out.line("  {" + (act.and? " return true; ":"") + "}");
+        String body = putValue(type) + (act.and? " return true;" : "");
+        out.line("  {" + body + (body.isEmpty()? "" : " ") + "}");
         out.line("");
       }
 
@@ -700,6 +1270,25 @@ public class Generate
       System.out.println(actions.size() + " semantic procedures");
     }
 
+  //-------------------------------------------------------------------
+  //  Statement setting value of type 'type' in skeleton,
+  //  preceded by blank, or empty string if no type.
+  //  Integer types and 'char' use the primitive slot as long,
+  //  'float' as double; 'boolean' is boxed by 'put'.
+  //-------------------------------------------------------------------
+  private String putValue(final String type)
+    {
+      if (type.isEmpty()) return "";
+      if (type.equals("long") || type.equals("int") || type.equals("short")
+          || type.equals("byte") || type.equals("char"))
+        return " lhs().putLong(0);";
+      if (type.equals("double") || type.equals("float"))
+        return " lhs().putDouble(0);";
+      if (type.equals("boolean"))
+        return " boolean value = false; lhs().put(value);";
+      return " " + type + " value = null; lhs().put(value);";
+    }
+
 
 
 
@@ -776,6 +1365,9 @@ public class Generate
     public void visit(Expr.Any expr)
       { doTerm(expr); }
 
+    public void visit(Expr.Cut expr)
+      { doTerm(expr); }
+
     private void doExpr(Expr expr)
       {
         String name = expr.name;
@@ -792,7 +1384,7 @@ public class Generate
       }
 
     private void doTerm(Expr expr)
-      { result = "next" + termCall(expr); }
+      { result = termCall("next",expr); }
 
   }
 
@@ -890,6 +1482,9 @@ public class Generate
     public void visit(Expr.Any expr)
       { doTerm(expr); }
 
+    public void visit(Expr.Cut expr)
+      { doTerm(expr); }
+
     private void doTerm(Expr expr)
       {
         out.line("if (!" + ref(expr)+ ") return rejectInner(" + cache + ");");
@@ -943,7 +1538,7 @@ public class Generate
       {
         Expr e = expr.expr;
         if (isTerm(e))
-          out.line("if (!ahead" + termCall(e) + ") return " + reject + ";");
+          out.line("if (!" + termCall("ahead",e) + ") return " + reject + ";");
         else
           out.line("if (!" + ref(expr) + ") return " + reject + ";");
       }
@@ -952,7 +1547,7 @@ public class Generate
       {
         Expr e = expr.expr;
         if (isTerm(e))
-          out.line("if (!aheadNot" + termCall(e) + ") return " + reject + ";");
+          out.line("if (!" + termCall("aheadNot",e) + ") return " + reject + ";");
         else
           out.line("if (!" + ref(expr) + ") return " + reject + ";");
       }
@@ -1002,12 +1597,411 @@ public class Generate
     public void visit(Expr.Any expr)
       { doTerm(expr); }
 
+    public void visit(Expr.Cut expr)
+      { out.line(ref(expr) + ";"); }
+
     private void doTerm(Expr expr)
       { out.line("if (!" + ref(expr)+ ") return " + reject + ";"); }
   }
 
 
 
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //
+  //  Iterative version (option -I)
+  //
+  //-----------------------------------------------------------------------
+  //
+  //  Each procedure is generated as method with parameter 'at' that
+  //  identifies the state in which the procedure is to be (re)started.
+  //  It starts in state 0. To call another procedure, it registers
+  //  the call and the state in which it is to be resumed, and returns.
+  //  The result of the called procedure is then found in 'returned'.
+  //  To return its own result, the procedure calls 'ret' and returns.
+  //  The code is otherwise the same as generated by ProcVisitor
+  //  and InliVisitor. The procedure body is a 'switch' where each
+  //  resume state is a 'case', enclosed in a loop so that it can
+  //  jump to a state by assigning it to 'at' and executing 'continue'.
+  //
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //-------------------------------------------------------------------
+  //  Create iterative procedure for Rule.
+  //-------------------------------------------------------------------
+  void iterRule(Expr.Rule rule)
+    {
+      iterStart(rule.name);
+
+      if (memoized(rule.name))
+      {
+        out.line("if (saved(" + rule.name + ")) " + iterRet("reuse()"));
+        if (test) cache = rule.name;
+      }
+      else
+        out.line(begin(rule));
+
+      //---------------------------------------------------------------
+      //  Special case: single expression on right-hand side
+      //  and no 'onFail' action.
+      //---------------------------------------------------------------
+      if ( rule.rhs.length==1 && rule.onFail[0]==null)
+      {
+        Expr e = rule.rhs[0];
+        Action act = rule.onSucc[0];
+        iterInline(e,"reject(" + cache + ")");
+        if (act==null)
+          out.line(iterReturn("accept(" + cache + ")"));
+        else if (act.and)
+        {
+          out.line("if (sem." + act.name + "()) " + iterRet("accept(" + cache + ")"));
+          out.line(iterReturn("reject(" + cache + ")"));
+        }
+        else
+        {
+          out.line("sem." + act.name + "();");
+          out.line(iterReturn("accept(" + cache + ")"));
+        }
+      }
+
+      //---------------------------------------------------------------
+      //  General case.
+      //---------------------------------------------------------------
+      else
+      {
+        for (int i=0;i<rule.rhs.length;i++)
+        {
+          Action succ = rule.onSucc[i];
+          Action fail = rule.onFail[i];
+
+          String c = iterCall(rule.rhs[i]);
+          if (succ==null)
+            out.line("if (" + c + ") " + iterRet("accept(" + cache + ")"));
+          else if (succ.and)
+          {
+            out.line("if (" + c + ")");
+            out.line("{ if (sem." + succ.name + "()) " + iterRet("accept(" + cache + ")") + " }");
+          }
+          else
+          {
+            out.line("if (" + c + ")");
+            out.line("{ sem." + succ.name + "(); " + iterRet("accept(" + cache + ")") + " }");
+          }
+
+          if (fail!=null)
+            out.line("sem." + fail.name + "();");
+        }
+        out.line(iterReturn("reject(" + cache + ")"));
+      }
+
+      iterEnd();
+    }
+
+  //-------------------------------------------------------------------
+  //  Create iterative procedure for subexpression.
+  //-------------------------------------------------------------------
+  void iterSub(Expr expr)
+    {
+      iterStart(procName);
+
+      if (memoized(procName))
+      {
+        out.line("if (savedInner(" + procName + ")) "
+                  + iterRet(isPred(expr)? "reusePred()" : "reuseInner()"));
+        if (test) cache = procName;
+      }
+
+      else if (isPred(expr))
+        out.line("begin(\"\"," + expected(diagPred(expr)) + ");");
+
+      else
+        out.line("begin(\"\");");
+
+      expr.accept(iterProcVisitor);
+      iterEnd();
+    }
+
+  //-------------------------------------------------------------------
+  //  Start and end of iterative procedure named 'name'.
+  //-------------------------------------------------------------------
+  void iterStart(final String name)
+    {
+      label = 0;
+      out.line("private void " + name + "(int at)");
+      out.indent();
+      out.line("{");
+      out.indent();
+      out.line("for (;;) switch (at)");
+      out.line("{");
+      out.indent();
+      iterLabel(0);
+    }
+
+  void iterEnd()
+    {
+      out.undent();
+      out.line("}");
+      out.undent();
+      out.line("}");
+      out.undent();
+      out.line("");
+    }
+
+  //-------------------------------------------------------------------
+  //  Generate code to execute 'expr' and return the condition
+  //  that is true if it succeeded. For a terminal, this is the call
+  //  to terminal service. Otherwise, generate call of the procedure
+  //  followed by the state in which to resume; the condition is then
+  //  the result left in 'returned'.
+  //-------------------------------------------------------------------
+  String iterCall(Expr expr)
+    {
+      String call = ref(expr);
+      if (isTerm(expr)) return call;
+      label++;
+      out.line("call($Proc_" + expr.name + "," + label + "); return;");
+      iterLabel(label);
+      return "returned";
+    }
+
+  //-------------------------------------------------------------------
+  //  Generate 'case' for state number 'n'.
+  //-------------------------------------------------------------------
+  void iterLabel(int n)
+    {
+      out.undent();
+      out.line("case " + n + ":");
+      out.indent();
+    }
+
+  //-------------------------------------------------------------------
+  //  Generate 'case' for state number 'n' that is also entered
+  //  from the preceding code: jump to it rather than fall through.
+  //-------------------------------------------------------------------
+  void iterEnter(int n)
+    {
+      out.line("at = " + n + "; continue;");
+      iterLabel(n);
+    }
+
+  //-------------------------------------------------------------------
+  //  Statement to return result 'res' (as block and as statements)
+  //  and to jump to state 'n'.
+  //-------------------------------------------------------------------
+  String iterRet(final String res)
+    { return "{ " + iterReturn(res) + " }"; }
+
+  String iterReturn(final String res)
+    { return "ret(" + res + "); return;"; }
+
+  String iterJump(int n)
+    { return "{ at = " + n + "; continue; }"; }
+
+  //-------------------------------------------------------------------
+  //  Generate code for 'while (expr);'.
+  //-------------------------------------------------------------------
+  void iterLoop(Expr expr)
+    {
+      if (isTerm(expr))
+      {
+        out.line("while (" + ref(expr) + ");");
+        return;
+      }
+      int loop = ++label;
+      iterEnter(loop);
+      out.line("if (" + iterCall(expr) + ") " + iterJump(loop));
+    }
+
+  //===================================================================
+  //  IterProcVisitor - visitor to generate body of iterative procedure
+  //===================================================================
+  IterProcVisitor iterProcVisitor = new IterProcVisitor();
+
+  class IterProcVisitor extends mouse.peg.Visitor
+  {
+    public void visit(Expr.Rule expr)
+      {throw new Error("SNOC" + expr.name); }
+
+    public void visit(Expr.Choice expr)
+      {
+        for (Expr e: expr.expr)
+          out.line("if (" + iterCall(e) + ") " + iterRet("acceptInner(" + cache + ")"));
+        out.line(iterReturn("rejectInner(" + cache + ")"));
+      }
+
+    public void visit(Expr.Sequence expr)
+      { doInline(expr); }
+
+    public void visit(Expr.And expr)
+      {
+        out.line("if (!" + iterCall(expr.expr) + ") " + iterRet("rejectPred(" + cache + ")"));
+        out.line(iterReturn("acceptPred(" + cache + ")"));
+      }
+
+    public void visit(Expr.Not expr)
+      {
+        out.line("if (" + iterCall(expr.expr) + ") " + iterRet("rejectPred(" + cache + ")"));
+        out.line(iterReturn("acceptPred(" + cache + ")"));
+      }
+
+    public void visit(Expr.Plus expr)
+      { doInline(expr); }
+
+    public void visit(Expr.Star expr)
+      { doInline(expr); }
+
+    public void visit(Expr.Query expr)
+      { doInline(expr); }
+
+    public void visit(Expr.PlusPlus expr)
+      { doInline(expr); }
+
+    public void visit(Expr.StarPlus expr)
+      { doInline(expr); }
+
+    public void visit(Expr.Ref expr)
+      { doInline(expr); }
+
+    public void visit(Expr.StringLit expr)
+      { doInline(expr); }
+
+    public void visit(Expr.CharClass expr)
+      { doInline(expr); }
+
+    public void visit(Expr.Range expr)
+      { doInline(expr); }
+
+    public void visit(Expr.Any expr)
+      { doInline(expr); }
+
+    public void visit(Expr.Cut expr)
+      { doInline(expr); }
+
+    private void doInline(Expr expr)
+      {
+        iterInline(expr,"rejectInner(" + cache + ")");
+        out.line(iterReturn("acceptInner(" + cache + ")"));
+      }
+  }
+
+  //===================================================================
+  //  IterInliVisitor - visitor to generate inline code
+  //  in iterative procedure
+  //
+  //  (Inline code falls through on success
+  //   or returns result of 'reject' on failure.)
+  //===================================================================
+  IterInliVisitor iterInliVisitor = new IterInliVisitor();
+
+  void iterInline(Expr expr, String rej)
+    {
+      iterReject = rej;
+      reject = iterRet(rej);
+      expr.accept(iterInliVisitor);
+    }
+
+  String iterReject;
+
+  class IterInliVisitor extends mouse.peg.Visitor
+  {
+    public void visit(Expr.Rule expr)
+      {throw new Error("SNOC" + expr.name); }
+
+    public void visit(Expr.Choice expr)
+      {
+        int ok = ++label;
+        for (Expr e: expr.expr)
+          out.line("if (" + iterCall(e) + ") " + iterJump(ok));
+        out.line(iterReturn(iterReject));
+        iterLabel(ok);
+      }
+
+    public void visit(Expr.Sequence expr)
+      {
+        for (Expr e: expr.expr)
+          e.accept(iterInliVisitor);
+      }
+
+    public void visit(Expr.And expr)
+      {
+        Expr e = expr.expr;
+        if (isTerm(e))
+          out.line("if (!" + termCall("ahead",e) + ") " + reject);
+        else
+          out.line("if (!" + iterCall(expr) + ") " + reject);
+      }
+
+    public void visit(Expr.Not expr)
+      {
+        Expr e = expr.expr;
+        if (isTerm(e))
+          out.line("if (!" + termCall("aheadNot",e) + ") " + reject);
+        else
+          out.line("if (!" + iterCall(expr) + ") " + reject);
+      }
+
+    public void visit(Expr.Plus expr)
+      {
+        out.line("if (!" + iterCall(expr.expr) + ") " + reject);
+        iterLoop(expr.expr);
+      }
+
+    public void visit(Expr.Star expr)
+      { iterLoop(expr.expr); }
+
+    public void visit(Expr.Query expr)
+      {
+        String c = iterCall(expr.expr);
+        if (isTerm(expr.expr))
+          out.line(c + ";");
+      }
+
+    public void visit(Expr.PlusPlus expr)
+      {
+        out.line("if (" + iterCall(expr.expr2) + ") " + reject);
+        int loop = ++label;
+        iterEnter(loop);
+        out.line("if (!" + iterCall(expr.expr1) + ") " + reject);
+        out.line("if (!" + iterCall(expr.expr2) + ") " + iterJump(loop));
+      }
+
+    public void visit(Expr.StarPlus expr)
+      {
+        int loop = ++label;
+        int end = ++label;
+        iterEnter(loop);
+        out.line("if (" + iterCall(expr.expr2) + ") " + iterJump(end));
+        out.line("if (!" + iterCall(expr.expr1) + ") " + reject);
+        out.line(iterJump(loop));
+        iterLabel(end);
+      }
+
+    public void visit(Expr.Ref expr)
+      {
+        String c = iterCall(expr);
+        if (expr.fal)
+          out.line("if (!" + c + ") " + reject);
+      }
+
+    public void visit(Expr.StringLit expr)
+      { doTerm(expr); }
+
+    public void visit(Expr.CharClass expr)
+      { doTerm(expr); }
+
+    public void visit(Expr.Range expr)
+      { doTerm(expr); }
+
+    public void visit(Expr.Any expr)
+      { doTerm(expr); }
+
+    public void visit(Expr.Cut expr)
+      { out.line(ref(expr) + ";"); }
+
+    private void doTerm(Expr expr)
+      { out.line("if (!" + ref(expr)+ ") " + reject); }
+  }
+
+
+
   //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
   //
   //  TermVisitor
@@ -1015,11 +2009,13 @@ public class Generate
   //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
 
   //-------------------------------------------------------------------
-  //  This procedure returns kernel of a call to terminal processing.
+  //  This procedure returns a call to terminal processing.
+  //  The 'prefix' is "next", "ahead", or "aheadNot".
   //-------------------------------------------------------------------
-  String termCall(Expr expr)
+  String termCall(final String prefix, Expr expr)
     {
-      termVisitor.cash = test? (expr.name) : "";
+      termVisitor.prefix = prefix;
+      termVisitor.neg = prefix.equals("aheadNot");
       termVisitor.ccash = test? ("," + expr.name) : "";
       expr.accept(termVisitor);
       return termVisitor.result;
@@ -1033,9 +2029,11 @@ public class Generate
     String result;
 
     //-----------------------------------------------------------------
-    //  Input to Visitor: references to cash
+    //  Input to Visitor: name of service, whether it is negated,
+    //  and reference to cash
     //-----------------------------------------------------------------
-    String cash;
+    String prefix;
+    boolean neg;
     String ccash;
 
     public void visit(Expr.StringLit expr)
@@ -1043,28 +2041,37 @@ public class Generate
         String cLit = Convert.toCharLit(expr.s.charAt(0));
         String sLit = Convert.toStringLit(expr.s);
         if (expr.s.length()==1)
-          result = "('" + cLit + "'" + ccash + ")";
+          result = prefix + "('" + cLit + "',"
+                   + exp("'" + expr.s + "'") + ccash + ")";
         else
-          result = "(\"" + sLit + "\"" + ccash + ")";
+          result = prefix + "(\"" + sLit + "\","
+                   + exp("'" + expr.s + "'") + ccash + ")";
       }
 
     public void visit(Expr.CharClass expr)
       {
         String cLit = Convert.toCharLit(expr.s.charAt(0));
         String sLit = Convert.toStringLit(expr.s);
+        if (expr.hat) neg = !neg;
         if (expr.s.length()==1)
         {
           if (expr.hat)
-            result = "Not(\'" + cLit + "\'" + ccash + ")";
+            result = prefix + "Not(\'" + cLit + "\',"
+                     + exp("'" + expr.s + "'") + ccash + ")";
           else
-           result = "(\'" + cLit + "\'" + ccash + ")";
+            result = prefix + "(\'" + cLit + "\',"
+                     + exp("'" + expr.s + "'") + ccash + ")";
         }
         else
         {
+          String set = set("[" + expr.s + "]",expr.s);
+          if (set==null) set = "\"" + sLit + "\"";
           if (expr.hat)
-            result = "NotIn(\"" + sLit + "\"" + ccash + ")";
+            result = prefix + "NotIn(" + set + ","
+                     + exp("[" + expr.s + "]") + ccash + ")";
           else
-            result = "In(\"" + sLit + "\"" + ccash + ")";
+            result = prefix + "In(" + set + ","
+                     + exp("[" + expr.s + "]") + ccash + ")";
         }
       }
 
@@ -1072,11 +2079,36 @@ public class Generate
       {
         String aLit = Convert.toCharLit(expr.a);
         String zLit = Convert.toCharLit(expr.z);
-        result = "In('"+ aLit + "','" + zLit + "'" + ccash + ")";
+        String set = null;
+        if (expr.z<SET_LIMIT)
+        {
+          StringBuilder chars = new StringBuilder();
+          for (char c=expr.a;c<=expr.z;c++)
+            chars.append(c);
+          set = set("[" + expr.a + "-" + expr.z + "]",chars.toString());
+        }
+        if (set==null)
+          result = prefix + "In('"+ aLit + "','" + zLit + "',"
+                   + exp("[" + expr.a + "-" + expr.z + "]") + ccash + ")";
+        else
+          result = prefix + "In(" + set + ","
+                   + exp("[" + expr.a + "-" + expr.z + "]") + ccash + ")";
       }
 
     public void visit(Expr.Any expr)
-      { result = "(" + cash + ")"; }
+      {
+        result = prefix + "("
+                 + expected(neg? "end of text" : "any character") + ccash + ")";
+      }
+
+    public void visit(Expr.Cut expr)
+      { result = test? "cut(" + expr.name + ")" : "cut()"; }
+
+    //-----------------------------------------------------------------
+    //  Number of text for failure of the terminal described by 'text'.
+    //-----------------------------------------------------------------
+    private int exp(final String text)
+      { return expected(neg? "not " + text : text); }
   }
 
 
@@ -1086,6 +2118,27 @@ public class Generate
   //  Auxiliary methods
   //
   //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //---------------------------------------------------------------
+  //  Generate statement that calls the start procedure by 'start'
+  //  and assigns its result to 'result', declaring it if 'decl'.
+  //  If the grammar contains cut, the start procedure is terminated
+  //  by CutFailure when the parse fails after a cut.
+  //---------------------------------------------------------------
+  void startCall(final String indent, final String start, boolean decl)
+    {
+      if (!cut)
+      {
+        out.line(indent + (decl? "boolean " : "") + "result = " + start + ";");
+        return;
+      }
+      if (decl)
+        out.line(indent + "boolean result;");
+      out.line(indent + "try");
+      out.line(indent + "{ result = " + start + "; }");
+      out.line(indent + "catch (CutFailure e)");
+      out.line(indent + "{ result = false; }");
+    }
+
   //---------------------------------------------------------------
   //  Create parsing procedures for subexpressions.
   //---------------------------------------------------------------
@@ -1100,12 +2153,19 @@ public class Generate
           Expr expr = subs.elementAt(i);
           procName = expr.name;
           out.box(procName + " = " + Convert.toComment(expr.asString()));
+
+          if (iter)
+          {
+            iterSub(expr);
+            continue;
+          }
+
           out.line("private boolean " + procName + "()");
           out.indent();
           out.line("{");
           out.indent();
 
-          if (memo | test)
+          if (memoized(procName))
           {
             out.line("if (savedInner(" + procName + ")) return "
                       + (isPred(expr)? "reusePred();" : "reuseInner();"));
@@ -1113,7 +2173,7 @@ public class Generate
           }
 
           else if (isPred(expr))
-            out.line("begin(\"\",\"" + Convert.toStringLit(diagPred(expr)) + "\");");
+            out.line("begin(\"\"," + expected(diagPred(expr)) + ");");
 
           else
             out.line("begin(\"\");");
@@ -1129,6 +2189,55 @@ public class Generate
       }
     }
 
+  //-------------------------------------------------------------------
+  //  Get call to 'begin' for Rule, identified by its number.
+  //  Its diagnostic name is numbered here, before the numbers
+  //  of texts for its expressions.
+  //-------------------------------------------------------------------
+  String begin(Expr.Rule rule)
+    {
+      expected(diagText(rule));
+      return "beginRule(" + ruleId(rule) + ");";
+    }
+
+  //-------------------------------------------------------------------
+  //  Get number of text for failure message, adding it to the list
+  //  if not there.
+  //-------------------------------------------------------------------
+  int expected(final String text)
+    {
+      Integer id = expIds.get(text);
+      if (id!=null) return id;
+      expTexts.add(text);
+      expIds.put(text,expTexts.size()-1);
+      return expTexts.size()-1;
+    }
+
+  //-------------------------------------------------------------------
+  //  Get name of bitmap constant for the set of characters in 'chars',
+  //  described by 'text', creating the bitmap if not there.
+  //  Returns null if 'chars' has a character beyond SET_LIMIT.
+  //-------------------------------------------------------------------
+  String set(final String text, final String chars)
+    {
+      Integer id = setIds.get(text);
+      if (id!=null) return "$Set" + id;
+      int max = 0;
+      for (int i=0;i<chars.length();i++)
+        if (chars.charAt(i)>max) max = chars.charAt(i);
+      if (max>=SET_LIMIT) return null;
+      long[] bits = new long[(max>>6)+1];
+      for (int i=0;i<chars.length();i++)
+      {
+        char c = chars.charAt(i);
+        bits[c>>6] |= 1L<<(c&63);
+      }
+      setBits.add(bits);
+      setTexts.add(text);
+      setIds.put(text,setBits.size()-1);
+      return "$Set" + (setBits.size()-1);
+    }
+
   //-------------------------------------------------------------------
   //  isPred
   //-------------------------------------------------------------------
@@ -1148,10 +2257,27 @@ public class Generate
           expr instanceof Expr.StringLit ||
           expr instanceof Expr.CharClass ||
           expr instanceof Expr.Range ||
-          expr instanceof Expr.Any ;
+          expr instanceof Expr.Any ||
+          expr instanceof Expr.Cut ;
 
     }
 
+  //-------------------------------------------------------------------
+  //  Get number of a Rule
+  //-------------------------------------------------------------------
+  int ruleId(Expr.Rule rule)
+    {
+      int i = 0;
+      while (peg.rules[i]!=rule) i++;
+      return i;
+    }
+
+  //-------------------------------------------------------------------
+  //  Get diagnostic text of a Rule, as used in failure messages
+  //-------------------------------------------------------------------
+  String diagText(Expr.Rule rule)
+    { return rule.diagName==null? rule.name : rule.diagName; }
+
   //-------------------------------------------------------------------
   //  Get diagnostic name of a Rule
   //-------------------------------------------------------------------
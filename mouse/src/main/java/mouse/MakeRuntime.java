@@ -22,6 +22,14 @@
 //    100414 Created for Mouse 1.2.
 //   Version 1.6.1
 //    140512 Class MakeRuntime made public.
+//   Version 1.10
+//    261018 Added Expected.java.
+//    261018 Added ParserPool.java.
+//    261018 Added ParserBatch.java.
+//    261018 Added SourceStream.java.
+//    261018 Added ParserEvents.java.
+//    261018 Added ParseTree.java.
+//    261018 Added ParseTreeFile.java.
 //
 //=========================================================================
 
@@ -131,14 +139,21 @@ public class MakeRuntime
       //---------------------------------------------------------------
       write("CurrentRule.java");
       write("Deferred.java");
+      write("Expected.java");
       write("ParserBase.java");
+      write("ParserBatch.java");
+      write("ParserEvents.java");
       write("ParserMemo.java");
+      write("ParserPool.java");
       write("ParserTest.java");
+      write("ParseTree.java");
+      write("ParseTreeFile.java");
       write("Phrase.java");
       write("SemanticsBase.java");
       write("Source.java");
       write("SourceFile.java");
       write("SourceString.java");
+      write("SourceStream.java");
     }
 
 
@@ -44,19 +44,36 @@
 //    130416 Added option -t.
 //   Version 1.6.1
 //    140512 Class TestParser made public.
+//   Version 1.10
+//    261018 Added option -j. Totals are computed in a 'Totals' object
+//           and the statistics procedures receive the Cache list
+//           and the CSV stream as arguments.
+//    261018 Option -m accepts 'f' for full memoization.
+//    261018 Option -m accepts 'w' for window memoization.
+//    261018 Option -m accepts 'o' for off-heap memoization.
+//    261018 Option -m accepts 'n' for memoization of failures only.
+//    261018 Option -m accepts 'a' for adaptive memoization.
+//           Statistics show memo peaks for 'f' and 'w'.
+//    261018 Added option -b.
 //
 //=========================================================================
 
 package mouse;
 
+import mouse.runtime.ParserBase;
+import mouse.runtime.ParserBatch;
+import mouse.runtime.ParserMemo;
+import mouse.runtime.ParserPool;
 import mouse.runtime.ParserTest.Cache;
 import mouse.runtime.Source;
 import mouse.runtime.SourceFile;
 import mouse.runtime.SourceString;
 import mouse.utility.CommandArgs;
 import mouse.utility.Convert;
+import mouse.utility.ThreadOutput;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
@@ -64,8 +81,11 @@ import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Locale;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 
 
@@ -106,7 +126,20 @@ import java.util.Vector;
 //    -m <n>
 //       Amount of memoization. Optional.
 //       <n> is a digit from 1 through 9 specifying the number of results
-//       to be cached. Default is no memoization.
+//       to be cached, or letter 'f' to cache all results (full packrat),
+//       or letter 'w' to cache all results that can still be used,
+//       or letter 'o' to cache all results in a table outside the heap,
+//       or letter 'n' to cache only failures,
+//       or letter 'a' to cache all results of procedures called
+//       repeatedly at the same position
+//       (see 'setMemo' in ParserMemo). Default is no memoization.
+//
+//    -b <n>
+//       Memo budget in bytes. Optional.
+//       All procedures share a store of cached results limited
+//       to approximately <n> bytes, instead of caching according to -m
+//       (see 'setMemoBudget' in ParserMemo). Statistics show
+//       the numbers of results found, not found, and evicted.
 //
 //    -T <string>
 //       Tracing switches. Optional.
@@ -132,6 +165,14 @@ import java.util.Vector;
 //
 //    -t Show timing for -f and -F.
 //
+//    -j <n>
+//       Number of threads to process files specified by -F. Optional.
+//       Each thread uses its own instance of the parser.
+//       The output for each file, including statistics written
+//       to System.out or to the CSV file, is the same as without -j,
+//       except for timing. Default is 1: process the files one after
+//       another.
+//
 //  If you do not specify -f or -F,  the parser is executed interactively,
 //  prompting for input by printing '>'.
 //  It is invoked separately for each input line after you press 'Enter'.
@@ -165,6 +206,7 @@ public class TestParser
   //-------------------------------------------------------------------
   static Object parser;
   static Cache cacheList[];
+  static int budget;         // Memo budget from -b, or 0
 
   //-------------------------------------------------------------------
   //  Statistics switches.
@@ -179,23 +221,6 @@ public class TestParser
   //-------------------------------------------------------------------
   static PrintStream csvFile;
 
-  //-------------------------------------------------------------
-  //  Computed totals.
-  //-------------------------------------------------------------
-  static int calls;
-  static int succ;
-  static int fail;
-  static int back;
-  static int reuse;
-  static int rescan;
-  static int totback;
-  static int maxback;
-
-  //-------------------------------------------------------------
-  //  Execution time.
-  //-------------------------------------------------------------
-  static long time;
-
   //-------------------------------------------------------------
   //  Locale for number representation.
   //-------------------------------------------------------------
@@ -211,7 +236,7 @@ public class TestParser
   public static void main(String argv[])
     throws IOException,IllegalAccessException,InvocationTargetException,
            InstantiationException,ClassNotFoundException,
-           NoSuchMethodException
+           NoSuchMethodException,InterruptedException
     {
       //=================================================================
       //  Get and check command arguments.
@@ -219,7 +244,7 @@ public class TestParser
       cmd = new CommandArgs
              (argv,      // arguments to parse
               "Ddt",     // options
-              "PFfmTC",  // options with argument
+              "PFfmbTCj", // options with argument
                0,0);     // no positional arguments
       if (cmd.nErrors()>0) return;
 
@@ -241,11 +266,30 @@ public class TestParser
       if (cmd.opt('m'))
       {
         String memo = cmd.optArg('m');
-        if (memo.length()!=1) m = -1;
+        if (memo.equals("f")) m = ParserMemo.FULL;
+        else if (memo.equals("w")) m = ParserMemo.WINDOW;
+        else if (memo.equals("o")) m = ParserMemo.OFFHEAP;
+        else if (memo.equals("n")) m = ParserMemo.FAILURES;
+        else if (memo.equals("a")) m = ParserMemo.ADAPTIVE;
+        else if (memo.length()!=1) m = 0;
         else m = 1 + "123456789".indexOf(memo.charAt(0));
-        if (m<1)
+        if (m==0)
+        {
+          System.out.println("-m is outside the range 1-9 and not 'f', 'w', 'o', 'n', or 'a'.");
+          return;
+        }
+      }
+
+      //---------------------------------------------------------------
+      //  The -b option.
+      //---------------------------------------------------------------
+      if (cmd.opt('b'))
+      {
+        try {budget = Integer.parseInt(cmd.optArg('b'));}
+        catch (NumberFormatException e) {budget = 0;}
+        if (budget<1)
         {
-          System.out.println("-m is outside the range 1-9.");
+          System.out.println("-b must be a positive number.");
           return;
         }
       }
@@ -277,6 +321,26 @@ public class TestParser
         return;
       }
 
+      //---------------------------------------------------------------
+      //  The -j option.
+      //---------------------------------------------------------------
+      int threads = 1;
+      if (cmd.opt('j'))
+      {
+        if (!cmd.opt('F'))
+        {
+          System.out.println("-j can only be specified together with -F.");
+          return;
+        }
+        try {threads = Integer.parseInt(cmd.optArg('j'));}
+        catch (NumberFormatException e) {threads = 0;}
+        if (threads<1)
+        {
+          System.out.println("-j must be a positive number.");
+          return;
+        }
+      }
+
       csv = cmd.opt('C');
       details = cmd.opt('d') | cmd.opt('D');
       allDetails = cmd.opt('D');
@@ -319,9 +383,7 @@ public class TestParser
       //---------------------------------------------------------------
       //  Instantiate the parser, set trace and memo, get cache list.
       //---------------------------------------------------------------
-      parser = parserClass.newInstance();
-      settrace.invoke(parser,trace);
-      setmemo.invoke(parser,m);
+      parser = newParser(trace,m);
       cacheList = (Cache[])caches.invoke(parser);
 
       //=================================================================
@@ -338,7 +400,7 @@ public class TestParser
       //=================================================================
       if (cmd.opt('f'))
       {
-        test(cmd.optArg('f'));
+        test(parser,cmd.optArg('f'),null);
         return;
       }
 
@@ -390,9 +452,14 @@ public class TestParser
       int failed = 0;
       long t0 = System.currentTimeMillis();
 
-      for (String name: files)
-        if (!test(name))
-          failed++;
+      if (threads==1)
+      {
+        for (String name: files)
+          if (!test(parser,name,csvFile))
+            failed++;
+      }
+      else
+        failed = testParallel(files,threads,trace,m);
 
       long t1 = System.currentTimeMillis();
 
@@ -421,17 +488,135 @@ public class TestParser
 
   //=====================================================================
   //
-  //  Run parser on file 'name'
+  //  Create parser instance with trace 'trace' and memo 'm'
+  //
+  //=====================================================================
+
+  static Object newParser(final String trace, int m)
+    throws IllegalAccessException,InvocationTargetException,
+           InstantiationException
+    {
+      Object p = parserClass.newInstance();
+      settrace.invoke(p,trace);
+      setmemo.invoke(p,m);
+      if (budget>0) ((ParserMemo)p).setMemoBudget(budget);
+      return p;
+    }
+
+
+  //=====================================================================
+  //
+  //  Run parser on files 'files' using 'threads' threads.
+  //  Write output and CSV for each file in the order of 'files'.
+  //  Return number of failed files.
+  //
+  //=====================================================================
+
+  static int testParallel
+    (Vector<String> files, int threads, final String trace, final int m)
+    throws IllegalAccessException,InvocationTargetException,
+           InterruptedException
+    {
+      final ThreadOutput output = ThreadOutput.install();
+
+      ParserPool.Factory<ParserBase> factory =
+        new ParserPool.Factory<ParserBase>()
+        {
+          public ParserBase create()
+            {
+              try
+              { return (ParserBase)newParser(trace,m); }
+              catch (Exception e)
+              { throw new Error("Cannot create parser",e); }
+            }
+        };
+
+      ParserBatch.Task<ParserBase,String,Result> task =
+        new ParserBatch.Task<ParserBase,String,Result>()
+        {
+          public Result run(ParserBase parser, String name)
+            throws Exception
+            {
+              Result r = new Result();
+              ByteArrayOutputStream csvBytes = null;
+              PrintStream csvOut = null;
+              if (csv)
+              {
+                csvBytes = new ByteArrayOutputStream();
+                csvOut = new PrintStream(csvBytes);
+              }
+              output.capture();
+              try
+              { r.ok = test(parser,name,csvOut); }
+              finally
+              { r.output = output.release(); }
+              if (csv)
+              {
+                csvOut.flush();
+                r.csv = csvBytes.toString();
+              }
+              return r;
+            }
+        };
+
+      ParserBatch<ParserBase> batch = new ParserBatch<ParserBase>(factory,threads);
+      List<Future<Result>> results = batch.submit(files,task);
+      batch.shutdown();
+
+      int failed = 0;
+      try
+      {
+        for (int i=0;i<results.size();i++)
+        {
+          Result r = results.get(i).get();
+          results.set(i,null);
+          System.out.print(r.output);
+          if (csv) csvFile.print(r.csv);
+          if (!r.ok) failed++;
+        }
+      }
+      catch (ExecutionException e)
+      {
+        Throwable cause = e.getCause();
+        if (cause instanceof InvocationTargetException)
+          throw (InvocationTargetException)cause;
+        if (cause instanceof IllegalAccessException)
+          throw (IllegalAccessException)cause;
+        throw new Error(cause);
+      }
+      finally
+      { output.uninstall(); }
+
+      return failed;
+    }
+
+  //-------------------------------------------------------------------
+  //  Result of 'test' run in parallel: success, output, and CSV lines.
+  //-------------------------------------------------------------------
+  static class Result
+  {
+    boolean ok;
+    String output;
+    String csv;
+  }
+
+
+  //=====================================================================
+  //
+  //  Run 'parser' on file 'name'.
+  //  Write statistics to 'csvOut' if -C specified.
   //
   //=====================================================================
 
-  static boolean test(final String name)
+  static boolean test(Object parser, final String name, PrintStream csvOut)
     throws IllegalAccessException,InvocationTargetException
     {
       Source src = new SourceFile(name);
       if (!src.created())
         return false;
 
+      Cache[] list = (Cache[])caches.invoke(parser);
+
       int size = src.end();
       System.out.printf("%n%s: %d bytes.%n",name,size);
 
@@ -443,13 +628,13 @@ public class TestParser
 
       if (parsed)
       {
-        compTotals();
-        time = t1-t0;
-        if (csv) csvTotals(name,size);
-        else writeTotals();
+        Totals totals = new Totals(list,parser);
+        totals.time = t1-t0;
+        if (csv) csvTotals(csvOut,name,size,totals);
+        else writeTotals(totals);
         if (details)
-          if (csv) csvDetails(allDetails);
-          else writeDetails(src,allDetails);
+          if (csv) csvDetails(csvOut,list,allDetails);
+          else writeDetails(list,src,allDetails);
       }
       else
       {
@@ -490,10 +675,9 @@ public class TestParser
 
         if (parsed)
         {
-          compTotals();
           System.out.println("");
-          writeTotals();
-          if (details) writeDetails(src,allDetails);
+          writeTotals(new Totals(cacheList,parser));
+          if (details) writeDetails(cacheList,src,allDetails);
         }
         else
           System.out.println("--- failed.");
@@ -505,33 +689,55 @@ public class TestParser
 
   //=====================================================================
   //
-  //  Compute totals
+  //  Totals computed from a list of Cache objects
   //
   //=====================================================================
 
-  static void compTotals()
-    {
-      calls   = 0;
-      succ    = 0;
-      fail    = 0;
-      back    = 0;
-      reuse   = 0;
-      rescan  = 0;
-      totback = 0;
-      maxback = 0;
-
-      for (Cache s: cacheList)
+  static class Totals
+  {
+    int calls;
+    int succ;
+    int fail;
+    int back;
+    int reuse;
+    int rescan;
+    int totback;
+    int maxback;
+    int memoPeak;   // Results held by Caches, with -m f or w
+    int window;     // Window size, with -m w
+    int active;     // Procedures with memo switched on, with -m a
+    int hits;       // Results found in store, with -b
+    int misses;     // Results not found in store, with -b
+    int evicted;    // Results evicted from store, with -b
+    long time;    // Execution time
+
+    Totals(Cache[] list)
+      {
+        for (Cache s: list)
+        {
+          calls   += s.calls;
+          succ    += s.succ;
+          fail    += s.fail;
+          back    += s.back;
+          reuse   += s.reuse;
+          rescan  += s.rescan;
+          totback += s.totback;
+          if (s.maxback>maxback) maxback = s.maxback;
+        }
+      }
+
+    Totals(Cache[] list, Object parser)
       {
-        calls   += s.calls;
-        succ    += s.succ;
-        fail    += s.fail;
-        back    += s.back;
-        reuse   += s.reuse;
-        rescan  += s.rescan;
-        totback += s.totback;
-        if (s.maxback>maxback) maxback = s.maxback;
+        this(list);
+        ParserMemo p = (ParserMemo)parser;
+        memoPeak = p.memoPeak();
+        window   = p.windowPeak();
+        active   = p.memoActive();
+        hits     = p.memoHits();
+        misses   = p.memoMisses();
+        evicted  = p.memoEvictions();
       }
-    }
+  }
 
 
   //=====================================================================
@@ -540,25 +746,39 @@ public class TestParser
   //
   //=====================================================================
 
-  static void writeTotals()
+  static void writeTotals(Totals t)
   {
     if (timing)
       System.out.printf
         ("time %d ms. %d calls: %d ok, %d failed, %d backtracked.%n",
-         time,calls, succ, fail, back);
+         t.time, t.calls, t.succ, t.fail, t.back);
     else
       System.out.printf
         ("%d calls: %d ok, %d failed, %d backtracked.%n",
-         calls, succ, fail, back);
-    System.out.printf("%d rescanned", rescan);
-    if (reuse==0)
+         t.calls, t.succ, t.fail, t.back);
+    System.out.printf("%d rescanned", t.rescan);
+    if (t.reuse==0)
       System.out.print(".\n");
     else
-      System.out.printf(", %d reused.%n",reuse);
-    if (back>0)
+      System.out.printf(", %d reused.%n",t.reuse);
+    if (t.back>0)
       System.out.printf
         (loc,"backtrack length: max %d, average %.1f.%n",
-         maxback, (float)totback/back);
+         t.maxback, (float)t.totback/t.back);
+    if (t.memoPeak>0)
+    {
+      System.out.printf("memo: max %d results held", t.memoPeak);
+      if (t.window==0)
+        System.out.print(".\n");
+      else
+        System.out.printf(", window max %d characters.%n",t.window);
+    }
+    if (t.active>0)
+      System.out.printf("memo switched on for %d procedures.%n",t.active);
+    if (budget>0)
+      System.out.printf
+        ("memo store: %d found, %d not found, %d evicted.%n",
+         t.hits, t.misses, t.evicted);
   }
 
 
@@ -568,14 +788,14 @@ public class TestParser
   //
   //=====================================================================
 
-  static void csvTotals(String name, int size)
+  static void csvTotals(PrintStream csvOut, String name, int size, Totals t)
   {
     if (timing)
-      csvFile.printf("\"%s\",%d,%d,%d,%d,%d,%d,%d,%d,%d,%d%n",
-        name,size,time,calls,succ,fail,back,rescan,reuse,totback,maxback);
+      csvOut.printf("\"%s\",%d,%d,%d,%d,%d,%d,%d,%d,%d,%d%n",
+        name,size,t.time,t.calls,t.succ,t.fail,t.back,t.rescan,t.reuse,t.totback,t.maxback);
     else
-      csvFile.printf("\"%s\",%d,%d,%d,%d,%d,%d,%d,%d,%d%n",
-        name,size,calls,succ,fail,back,rescan,reuse,totback,maxback);
+      csvOut.printf("\"%s\",%d,%d,%d,%d,%d,%d,%d,%d,%d%n",
+        name,size,t.calls,t.succ,t.fail,t.back,t.rescan,t.reuse,t.totback,t.maxback);
   }
 
 
@@ -585,7 +805,7 @@ public class TestParser
   //
   //=====================================================================
 
-  static void writeDetails(Source src, boolean all)
+  static void writeDetails(Cache[] list, Source src, boolean all)
     {
       if (!all) System.out.println("\nBacktracking, rescan, reuse:");
       System.out.printf
@@ -594,7 +814,7 @@ public class TestParser
       System.out.printf
         ("%-13s %5s %5s %5s %5s %5s %5s %5s %-15s%n",
          "-------------", "-----", "-----", "-----", "-----", "-----", "-----", "-----", "--");
-      for (Cache s: cacheList)
+      for (Cache s: list)
       {
         if (all || s.back!=0 || s.reuse!=0 || s.rescan!=0)
         {
@@ -621,18 +841,18 @@ public class TestParser
   //
   //=====================================================================
 
-  static void csvDetails(boolean all)
+  static void csvDetails(PrintStream csvOut, Cache[] list, boolean all)
     {
-      for (Cache s: cacheList)
+      for (Cache s: list)
       {
         if (all || s.back!=0 || s.reuse!=0 || s.rescan!=0)
         {
           String desc = Convert.toPrint(s.name).replace("\"","\"\"");
           if (timing)
-            csvFile.printf("\"%s\",\"\",\"\",%d,%d,%d,%d,%d,%d,%d,%d%n",
+            csvOut.printf("\"%s\",\"\",\"\",%d,%d,%d,%d,%d,%d,%d,%d%n",
               desc,s.calls,s.succ,s.fail,s.back,s.rescan,s.reuse,s.totback,s.maxback);
           else
-            csvFile.printf("\"%s\",\"\",%d,%d,%d,%d,%d,%d,%d,%d%n",
+            csvOut.printf("\"%s\",\"\",%d,%d,%d,%d,%d,%d,%d,%d%n",
               desc,s.calls,s.succ,s.fail,s.back,s.rescan,s.reuse,s.totback,s.maxback);
         }
       }
@@ -43,16 +43,28 @@
 //    130415 Added option '-t'.
 //   Version 1.6.1
 //    140512 Class TryParser made public.
+//   Version 1.10
+//    261018 Added option -j.
+//    261018 Option -m accepts 'f' for full memoization.
+//    261018 Option -m accepts 'w' for window memoization.
+//    261018 Option -m accepts 'o' for off-heap memoization.
+//    261018 Option -m accepts 'n' for memoization of failures only.
+//    261018 Option -m accepts 'a' for adaptive memoization.
 //
 //=========================================================================
 
 
 package mouse;
 
+import mouse.runtime.ParserBase;
+import mouse.runtime.ParserBatch;
+import mouse.runtime.ParserMemo;
+import mouse.runtime.ParserPool;
 import mouse.runtime.Source;
 import mouse.runtime.SourceFile;
 import mouse.runtime.SourceString;
 import mouse.utility.CommandArgs;
+import mouse.utility.ThreadOutput;
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
 import java.io.BufferedReader;
@@ -60,7 +72,10 @@ import java.io.FileReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.FileNotFoundException;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 
 
@@ -101,7 +116,13 @@ import java.util.Vector;
 //       Amount of memoization. Optional.
 //       Applicable only to a parser generated with option -M or -T.
 //       <n> is a digit from 1 through 9 specifying the number of results
-//       to be cached. Default is no memoization.
+//       to be cached, or letter 'f' to cache all results (full packrat),
+//       or letter 'w' to cache all results that can still be used,
+//       or letter 'o' to cache all results in a table outside the heap,
+//       or letter 'n' to cache only failures,
+//       or letter 'a' to cache all results of procedures called
+//       repeatedly at the same position
+//       (see 'setMemo' in ParserMemo). Default is no memoization.
 //
 //    -T <string>
 //       Tracing switches. Optional.
@@ -111,6 +132,13 @@ import java.util.Vector;
 //
 //    -t Show timing for -f and -F.
 //
+//    -j <n>
+//       Number of threads to process files specified by -F. Optional.
+//       Each thread uses its own instance of the parser.
+//       The output for each file, and the totals, are the same
+//       as without -j, except for timing.
+//       Default is 1: process the files one after another.
+//
 //  If you do not specify -f or -F, the parser is executed interactively,
 //  prompting for input by printing '>'.
 //  It is invoked separately for each input line after you press 'Enter'.
@@ -152,7 +180,7 @@ public class TryParser
   public static void main(String argv[])
     throws IOException,IllegalAccessException,InvocationTargetException,
            InstantiationException,ClassNotFoundException,
-           NoSuchMethodException
+           NoSuchMethodException,InterruptedException
     {
       //=================================================================
       //  Get and check command arguments.
@@ -160,7 +188,7 @@ public class TryParser
       cmd = new CommandArgs
              (argv,      // arguments to parse
               "t",       // options without argument
-              "PFfmT",   // options with argument
+              "PFfmTj",  // options with argument
               0,0);      // no positional arguments
       if (cmd.nErrors()>0) return;
 
@@ -182,11 +210,16 @@ public class TryParser
       if (cmd.opt('m'))
       {
         String memo = cmd.optArg('m');
-        if (memo.length()!=1) m = -1;
+        if (memo.equals("f")) m = ParserMemo.FULL;
+        else if (memo.equals("w")) m = ParserMemo.WINDOW;
+        else if (memo.equals("o")) m = ParserMemo.OFFHEAP;
+        else if (memo.equals("n")) m = ParserMemo.FAILURES;
+        else if (memo.equals("a")) m = ParserMemo.ADAPTIVE;
+        else if (memo.length()!=1) m = 0;
         else m = 1 + "123456789".indexOf(memo.charAt(0));
-        if (m<1)
+        if (m==0)
         {
-          System.out.println("-m is outside the range 1-9.");
+          System.out.println("-m is outside the range 1-9 and not 'f', 'w', 'o', 'n', or 'a'.");
           return;
         }
       }
@@ -206,6 +239,26 @@ public class TryParser
         return;
       }
 
+      //---------------------------------------------------------------
+      //  The -j option.
+      //---------------------------------------------------------------
+      int threads = 1;
+      if (cmd.opt('j'))
+      {
+        if (!cmd.opt('F'))
+        {
+          System.out.println("-j can only be specified together with -F.");
+          return;
+        }
+        try {threads = Integer.parseInt(cmd.optArg('j'));}
+        catch (NumberFormatException e) {threads = 0;}
+        if (threads<1)
+        {
+          System.out.println("-j must be a positive number.");
+          return;
+        }
+      }
+
       //=================================================================
       //  Set up the parser.
       //=================================================================
@@ -242,9 +295,7 @@ public class TryParser
       //---------------------------------------------------------------
       //  Instantiate the parser, set trace and (optionally) memo.
       //---------------------------------------------------------------
-      parser = parserClass.newInstance();
-      settrace.invoke(parser,trace);
-      if (setmemo!=null) setmemo.invoke(parser,m);
+      parser = newParser(trace,m);
 
       //=================================================================
       //  If no input files given, run parser interactively.
@@ -260,7 +311,7 @@ public class TryParser
       //=================================================================
       if (cmd.opt('f'))
       {
-        if (test(cmd.optArg('f')))
+        if (test(parser,cmd.optArg('f')))
           System.out.println("--- ok.");
         return;
       }
@@ -302,9 +353,14 @@ public class TryParser
       int failed = 0;
       long t0 = System.currentTimeMillis();
 
-      for (String name: files)
-        if (!test(name))
-          failed++;
+      if (threads==1)
+      {
+        for (String name: files)
+          if (!test(parser,name))
+            failed++;
+      }
+      else
+        failed = testParallel(files,threads,trace,m);
 
       long t1 = System.currentTimeMillis();
 
@@ -326,11 +382,110 @@ public class TryParser
 
   //=====================================================================
   //
-  //  Run parser on file 'name'
+  //  Create parser instance with trace 'trace' and memo 'm'
+  //
+  //=====================================================================
+
+  static Object newParser(final String trace, int m)
+    throws IllegalAccessException,InvocationTargetException,
+           InstantiationException
+    {
+      Object p = parserClass.newInstance();
+      settrace.invoke(p,trace);
+      if (setmemo!=null) setmemo.invoke(p,m);
+      return p;
+    }
+
+  //=====================================================================
+  //
+  //  Run parser on files 'files' using 'threads' threads.
+  //  Write output for each file in the order of 'files'.
+  //  Return number of failed files.
+  //
+  //=====================================================================
+
+  static int testParallel
+    (Vector<String> files, int threads, final String trace, final int m)
+    throws IllegalAccessException,InvocationTargetException,
+           InterruptedException
+    {
+      final ThreadOutput output = ThreadOutput.install();
+
+      ParserPool.Factory<ParserBase> factory =
+        new ParserPool.Factory<ParserBase>()
+        {
+          public ParserBase create()
+            {
+              try
+              { return (ParserBase)newParser(trace,m); }
+              catch (Exception e)
+              { throw new Error("Cannot create parser",e); }
+            }
+        };
+
+      ParserBatch.Task<ParserBase,String,Result> task =
+        new ParserBatch.Task<ParserBase,String,Result>()
+        {
+          public Result run(ParserBase parser, String name)
+            throws Exception
+            {
+              Result r = new Result();
+              output.capture();
+              try
+              { r.ok = test(parser,name); }
+              finally
+              { r.output = output.release(); }
+              return r;
+            }
+        };
+
+      ParserBatch<ParserBase> batch = new ParserBatch<ParserBase>(factory,threads);
+      List<Future<Result>> results = batch.submit(files,task);
+      batch.shutdown();
+
+      int failed = 0;
+      try
+      {
+        for (int i=0;i<results.size();i++)
+        {
+          Result r = results.get(i).get();
+          results.set(i,null);
+          System.out.print(r.output);
+          if (!r.ok) failed++;
+        }
+      }
+      catch (ExecutionException e)
+      {
+        Throwable cause = e.getCause();
+        if (cause instanceof InvocationTargetException)
+          throw (InvocationTargetException)cause;
+        if (cause instanceof IllegalAccessException)
+          throw (IllegalAccessException)cause;
+        throw new Error(cause);
+      }
+      finally
+      { output.uninstall(); }
+
+      return failed;
+    }
+
+  //-------------------------------------------------------------------
+  //  Result of 'test' run in parallel: success and output.
+  //-------------------------------------------------------------------
+  static class Result
+  {
+    boolean ok;
+    String output;
+  }
+
+
+  //=====================================================================
+  //
+  //  Run 'parser' on file 'name'
   //
   //=====================================================================
 
-  static boolean test(final String name)
+  static boolean test(Object parser, final String name)
     throws IllegalAccessException,InvocationTargetException
     {
       Source src = new SourceFile(name);
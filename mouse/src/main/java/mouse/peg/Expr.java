@@ -31,7 +31,8 @@
 //    110920 Added subclasses 'PlusPlus' and 'StarPlus'.
 //   Version 1.5.1
 //    120102 (Steve Owens) Removed unused import.
-//
+//   Version 1.10
+//    261018 Added subclass 'Cut' and attribute 'cut'.
 //
 //=========================================================================
 
@@ -61,6 +62,7 @@ package mouse.peg;
 //  - Expr.CharClass - character class.
 //  - Expr.Range - character from range.
 //  - Expr.Any - any character.
+//  - Expr.Cut - cut '#'.
 //
 //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
 
@@ -96,6 +98,11 @@ public abstract class Expr
   public boolean fal = false; // May fail
   public boolean WF  = false; // Is well-formed
 
+  //-------------------------------------------------------------------
+  //  May execute a cut.
+  //-------------------------------------------------------------------
+  public boolean cut = false;
+
 
   //=====================================================================
   //
@@ -654,6 +661,37 @@ public abstract class Expr
     public void accept(Visitor v)
       { v.visit(this); }
   }
-}
 
 
+
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //
+  //  Class Expr.Cut
+  //
+  //  Represents cut '#': consumes nothing and never fails, but once
+  //  executed, the parser commits to everything it has done so far.
+  //  Any later failure that would backtrack to before the cut
+  //  terminates the parse as failed.
+  //
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+  public static class Cut extends Expr
+  {
+    //-----------------------------------------------------------------
+    //  Create.
+    //-----------------------------------------------------------------
+    public Cut()
+      {
+        nul = true;
+        WF  = true;
+        cut = true;
+        asString = "#";
+      }
+
+    //-----------------------------------------------------------------
+    //  Accept visitor.
+    //-----------------------------------------------------------------
+    public void accept(Visitor v)
+      { v.visit(this); }
+  }
+}
@@ -29,6 +29,9 @@
 //   Version 1.5.1
 //    120102 (Steve Owens) Removed unused import.
 //           Removed unused varable 'nul1' in 'visit(Expr.StarPlus)'.
+//   Version 1.10
+//    261018 Added cut: listed with terminals; 'checkCuts' computes
+//           attribute 'cut' and reports cut inside a predicate.
 //
 //=========================================================================
 
@@ -130,6 +133,13 @@ public class PEG
       //---------------------------------------------------------------
       reconstruct();
 
+      //---------------------------------------------------------------
+      //  Find expressions that may execute cut, and quit
+      //  if a predicate may execute it.
+      //---------------------------------------------------------------
+      checkCuts();
+      if (errors>0) return;
+
       //---------------------------------------------------------------
       //  Compute attributes and well-formedness.
       //---------------------------------------------------------------
@@ -322,6 +332,72 @@ public class PEG
     }
 
 
+  //=====================================================================
+  //
+  //  Check cuts.
+  //
+  //---------------------------------------------------------------------
+  //
+  //  Computes the 'cut' attribute for all expressions: true if the
+  //  expression may execute a cut, directly or via called rules.
+  //  For terminals the attribute is preset by the constructor.
+  //  For other expressions it is computed by iteration to a fixpoint.
+  //  The CutVisitor is used for the iteration step.
+  //  A predicate restores the input position after succeeding,
+  //  which is backtracking over any cut it executed.
+  //  Cut in a predicate is thus an error.
+  //
+  //=====================================================================
+
+  private void checkCuts()
+    {
+      int c = 0;  // Number of expressions with cut before last step
+
+      CutVisitor cutVisitor = new CutVisitor();
+
+      while(true)
+      {
+        //-------------------------------------------------------------
+        //  Iteration step
+        //-------------------------------------------------------------
+        for (Expr e: refs)
+          e.accept(cutVisitor);
+        for (Expr e: subs)
+          e.accept(cutVisitor);
+        for (Expr e: rules)
+          e.accept(cutVisitor);
+
+        //-------------------------------------------------------------
+        //  Count expressions with cut (non-terminals only)
+        //-------------------------------------------------------------
+        int cuts = 0;
+        for (Expr e: rules)
+          if (e.cut) cuts++;
+        for (Expr e: subs)
+          if (e.cut) cuts++;
+
+        //-------------------------------------------------------------
+        //  Break if fixpoint reached
+        //-------------------------------------------------------------
+        if (cuts==c) break;
+        c = cuts;
+      }
+
+      //---------------------------------------------------------------
+      //  Report predicates with cut.
+      //---------------------------------------------------------------
+      for (Expr e: subs)
+      {
+        if (e.cut && (e instanceof Expr.And || e instanceof Expr.Not))
+        {
+          System.out.println("Error: cut in predicate "
+                             + Convert.toPrint(e.asString()) + ".");
+          errors++;
+        }
+      }
+    }
+
+
   //=====================================================================
   //
   //  Compute Ford's attributes: nul, adv, fal for all expressions.
@@ -505,6 +581,9 @@ public class PEG
     public void visit(Expr.Any expr)
       { terms.add(expr); }
 
+    public void visit(Expr.Cut expr)
+      { terms.add(expr); }
+
     private void doCompound(Expr expr, Expr[] list)
       {
         if (subs.add(expr))   // If not visited yet
@@ -758,6 +837,61 @@ public class PEG
 
 
 
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //
+  //  CutVisitor - computes the 'cut' attribute
+  //
+  //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+  //-------------------------------------------------------------------
+  //  Each visit computes the attribute from those of subexpressions.
+  //  The attribute for terminals is preset by their constructors.
+  //  The visitor does not climb down the parse tree.
+  //-------------------------------------------------------------------
+
+  class CutVisitor extends mouse.peg.Visitor
+  {
+    public void visit(Expr.Rule expr)
+      { doList(expr,expr.rhs); }
+
+    public void visit(Expr.Choice expr)
+      { doList(expr,expr.expr); }
+
+    public void visit(Expr.Sequence expr)
+      { doList(expr,expr.expr); }
+
+    public void visit(Expr.And expr)
+      { expr.cut = expr.expr.cut; }
+
+    public void visit(Expr.Not expr)
+      { expr.cut = expr.expr.cut; }
+
+    public void visit(Expr.Plus expr)
+      { expr.cut = expr.expr.cut; }
+
+    public void visit(Expr.Star expr)
+      { expr.cut = expr.expr.cut; }
+
+    public void visit(Expr.Query expr)
+      { expr.cut = expr.expr.cut; }
+
+    public void visit(Expr.PlusPlus expr)
+      { expr.cut = expr.expr1.cut || expr.expr2.cut; }
+
+    public void visit(Expr.StarPlus expr)
+      { expr.cut = expr.expr1.cut || expr.expr2.cut; }
+
+    public void visit(Expr.Ref expr)
+      { expr.cut = expr.rule.cut; }
+
+    private void doList(Expr expr, Expr[] list)
+      {
+        for (Expr e: list)
+          if (e.cut) expr.cut = true;
+      }
+  }
+
+
+
   //HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
   //
   //  AttrVisitor - computes Ford's attributes
@@ -1,7 +1,8 @@
 //=========================================================================
 //
-//  This file was generated by Mouse 1.9 at 2017-09-01 12:40:38 GMT
-//  from grammar 'C:\Users\Giraf\Mouse\mouse\peg\grammar.peg'.
+//  This file was generated by Mouse 1.10 at 2026-10-18 14:16:45 GMT
+//  from grammar
+//    '/root/project/mouse/src/main/java/mouse/peg/grammar.peg'.
 //
 //=========================================================================
 
@@ -26,6 +27,8 @@ public class Parser extends mouse.runtime.ParserBase
       sem = new Semantics();
       sem.rule = this;
       super.sem = sem;
+      setExpected(expectedList);
+      setRules(ruleNames,ruleDiags);
     }
   
   //-------------------------------------------------------------------
@@ -56,7 +59,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Grammar()
     {
-      begin("Grammar");
+      beginRule(0);
       Space();
       while (!EOT())
         if (!Grammar_0()) return reject();
@@ -80,7 +83,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Rule()
     {
-      begin("Rule");
+      beginRule(1);
       if (Rule_0())
       { sem.Rule(); return accept(); }
       sem.Error();
@@ -106,7 +109,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Skip()
     {
-      begin("Skip");
+      beginRule(2);
       if (SEMI()) return accept();
       if (Skip_0()) return accept();
       return reject();
@@ -119,7 +122,7 @@ public class Parser extends mouse.runtime.ParserBase
     {
       begin("");
       if (Skip_1()) return rejectInner();
-      do if (!next()) return rejectInner();
+      do if (!next(3)) return rejectInner();
         while (!Skip_1());
       return acceptInner();
     }
@@ -141,7 +144,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean RuleRhs()
     {
-      begin("RuleRhs","right-hand side");
+      beginRule(3);
       if (!Sequence()) return reject();
       Actions();
       while (RuleRhs_0());
@@ -166,7 +169,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Choice()
     {
-      begin("Choice");
+      beginRule(4);
       if (!Sequence()) return reject();
       while (Choice_0());
       sem.Choice();
@@ -189,7 +192,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Sequence()
     {
-      begin("Sequence");
+      beginRule(5);
       if (!Prefixed()) return reject();
       while (Prefixed());
       sem.Sequence();
@@ -201,7 +204,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Prefixed()
     {
-      begin("Prefixed");
+      beginRule(6);
       PREFIX();
       if (!Suffixed()) return reject();
       sem.Prefixed();
@@ -213,7 +216,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Suffixed()
     {
-      begin("Suffixed");
+      beginRule(7);
       if (!Primary()) return reject();
       Suffixed_0();
       sem.Suffixed();
@@ -244,11 +247,12 @@ public class Parser extends mouse.runtime.ParserBase
   
   //=====================================================================
   //  Primary = Name {Resolve} / LPAREN Choice RPAREN {Pass2} / ANY {Any}
-  //    / StringLit {Pass} / Range {Pass} / CharClass {Pass} ;
+  //    / StringLit {Pass} / Range {Pass} / CharClass {Pass} / CUT {Cut}
+  //    ;
   //=====================================================================
   private boolean Primary()
     {
-      begin("Primary");
+      beginRule(8);
       if (Name())
       { sem.Resolve(); return accept(); }
       if (Primary_0())
@@ -261,6 +265,8 @@ public class Parser extends mouse.runtime.ParserBase
       { sem.Pass(); return accept(); }
       if (CharClass())
       { sem.Pass(); return accept(); }
+      if (CUT())
+      { sem.Cut(); return accept(); }
       return reject();
     }
   
@@ -281,7 +287,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Actions()
     {
-      begin("Actions");
+      beginRule(9);
       OnSucc();
       OnFail();
       sem.Actions();
@@ -293,7 +299,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean OnSucc()
     {
-      begin("OnSucc");
+      beginRule(10);
       OnSucc_0();
       sem.OnSucc();
       return accept();
@@ -317,7 +323,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean OnFail()
     {
-      begin("OnFail");
+      beginRule(11);
       OnFail_0();
       sem.OnFail();
       return accept();
@@ -341,7 +347,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Name()
     {
-      begin("Name");
+      beginRule(12);
       if (!Letter()) return reject();
       while (Name_0());
       Space();
@@ -365,11 +371,11 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean DiagName()
     {
-      begin("DiagName");
-      if (!next('<')) return reject();
-      if (next('>')) return reject();
+      beginRule(13);
+      if (!next('<',15)) return reject();
+      if (next('>',16)) return reject();
       do if (!Char()) return reject();
-        while (!next('>'));
+        while (!next('>',16));
       Space();
       sem.DiagName();
       return accept();
@@ -380,11 +386,11 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean StringLit()
     {
-      begin("StringLit");
-      if (!next('"')) return reject();
-      if (next('"')) return reject();
+      beginRule(14);
+      if (!next('"',18)) return reject();
+      if (next('"',18)) return reject();
       do if (!Char()) return reject();
-        while (!next('"'));
+        while (!next('"',18));
       Space();
       sem.StringLit();
       return accept();
@@ -395,13 +401,13 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean CharClass()
     {
-      begin("CharClass");
-      if (!next('[')
-       && !next("^[")
+      beginRule(15);
+      if (!next('[',20)
+       && !next("^[",21)
          ) return reject();
-      if (next(']')) return reject();
+      if (next(']',22)) return reject();
       do if (!Char()) return reject();
-        while (!next(']'));
+        while (!next(']',22));
       Space();
       sem.CharClass();
       return accept();
@@ -412,12 +418,12 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Range()
     {
-      begin("Range");
-      if (!next('[')) return reject();
+      beginRule(16);
+      if (!next('[',20)) return reject();
       if (!Char()) return reject();
-      if (!next('-')) return reject();
+      if (!next('-',24)) return reject();
       if (!Char()) return reject();
-      if (!next(']')) return reject();
+      if (!next(']',22)) return reject();
       Space();
       sem.Range();
       return accept();
@@ -428,10 +434,10 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Char()
     {
-      begin("Char");
+      beginRule(17);
       if (Escape())
       { sem.Pass(); return accept(); }
-      if (nextNotIn("\r\n\\"))
+      if (nextNotIn($Set0,26))
       { sem.Char(); return accept(); }
       return reject();
     }
@@ -442,14 +448,14 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Escape()
     {
-      begin("Escape");
+      beginRule(18);
       if (Escape_0())
       { sem.Unicode(); return accept(); }
-      if (next("\\t"))
+      if (next("\\t",28))
       { sem.Tab(); return accept(); }
-      if (next("\\n"))
+      if (next("\\n",29))
       { sem.Newline(); return accept(); }
-      if (next("\\r"))
+      if (next("\\r",30))
       { sem.CarRet(); return accept(); }
       if (Escape_1())
       { sem.Escape(); return accept(); }
@@ -462,7 +468,7 @@ public class Parser extends mouse.runtime.ParserBase
   private boolean Escape_0()
     {
       begin("");
-      if (!next("\\u")) return rejectInner();
+      if (!next("\\u",31)) return rejectInner();
       if (!HexDigit()) return rejectInner();
       if (!HexDigit()) return rejectInner();
       if (!HexDigit()) return rejectInner();
@@ -476,9 +482,9 @@ public class Parser extends mouse.runtime.ParserBase
   private boolean Escape_1()
     {
       begin("");
-      if (!aheadNot("\\u")) return rejectInner();
-      if (!next('\\')) return rejectInner();
-      if (!next()) return rejectInner();
+      if (!aheadNot("\\u",32)) return rejectInner();
+      if (!next('\\',33)) return rejectInner();
+      if (!next(3)) return rejectInner();
       return acceptInner();
     }
   
@@ -487,9 +493,9 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Letter()
     {
-      begin("Letter");
-      if (nextIn('a','z')) return accept();
-      if (nextIn('A','Z')) return accept();
+      beginRule(19);
+      if (nextIn($Set1,35)) return accept();
+      if (nextIn($Set2,36)) return accept();
       return reject();
     }
   
@@ -498,8 +504,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Digit()
     {
-      begin("Digit");
-      if (!nextIn('0','9')) return reject();
+      beginRule(20);
+      if (!nextIn($Set3,38)) return reject();
       return accept();
     }
   
@@ -508,10 +514,10 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean HexDigit()
     {
-      begin("HexDigit");
-      if (nextIn('0','9')) return accept();
-      if (nextIn('a','f')) return accept();
-      if (nextIn('A','F')) return accept();
+      beginRule(21);
+      if (nextIn($Set3,38)) return accept();
+      if (nextIn($Set4,40)) return accept();
+      if (nextIn($Set5,41)) return accept();
       return reject();
     }
   
@@ -520,8 +526,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean PREFIX()
     {
-      begin("PREFIX","& or !");
-      if (!nextIn("&!")) return reject();
+      beginRule(22);
+      if (!nextIn($Set6,43)) return reject();
       Space();
       return accept();
     }
@@ -531,8 +537,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean SUFFIX()
     {
-      begin("SUFFIX","? or * or +");
-      if (!nextIn("?*+")) return reject();
+      beginRule(23);
+      if (!nextIn($Set7,45)) return reject();
       Space();
       return accept();
     }
@@ -542,9 +548,9 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean UNTIL()
     {
-      begin("UNTIL","*+ or ++");
-      if (!next("*+")
-       && !next("++")
+      beginRule(24);
+      if (!next("*+",47)
+       && !next("++",48)
          ) return reject();
       Space();
       return accept();
@@ -555,8 +561,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean EQUAL()
     {
-      begin("EQUAL","=");
-      if (!next('=')) return reject();
+      beginRule(25);
+      if (!next('=',50)) return reject();
       Space();
       return accept();
     }
@@ -566,8 +572,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean SEMI()
     {
-      begin("SEMI",";");
-      if (!next(';')) return reject();
+      beginRule(26);
+      if (!next(';',52)) return reject();
       Space();
       return accept();
     }
@@ -577,8 +583,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean SLASH()
     {
-      begin("SLASH","/");
-      if (!next('/')) return reject();
+      beginRule(27);
+      if (!next('/',54)) return reject();
       Space();
       return accept();
     }
@@ -588,8 +594,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean AND()
     {
-      begin("AND","&");
-      if (!next('&')) return reject();
+      beginRule(28);
+      if (!next('&',56)) return reject();
       Space();
       return accept();
     }
@@ -599,8 +605,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean LPAREN()
     {
-      begin("LPAREN","(");
-      if (!next('(')) return reject();
+      beginRule(29);
+      if (!next('(',58)) return reject();
       Space();
       return accept();
     }
@@ -610,8 +616,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean RPAREN()
     {
-      begin("RPAREN",")");
-      if (!next(')')) return reject();
+      beginRule(30);
+      if (!next(')',60)) return reject();
       Space();
       return accept();
     }
@@ -621,8 +627,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean LWING()
     {
-      begin("LWING","{");
-      if (!next('{')) return reject();
+      beginRule(31);
+      if (!next('{',62)) return reject();
       Space();
       return accept();
     }
@@ -632,8 +638,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean RWING()
     {
-      begin("RWING","}");
-      if (!next('}')) return reject();
+      beginRule(32);
+      if (!next('}',64)) return reject();
       Space();
       return accept();
     }
@@ -643,8 +649,8 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean TILDA()
     {
-      begin("TILDA","~");
-      if (!next('~')) return reject();
+      beginRule(33);
+      if (!next('~',66)) return reject();
       Space();
       return accept();
     }
@@ -654,8 +660,19 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean ANY()
     {
-      begin("ANY","_");
-      if (!next('_')) return reject();
+      beginRule(34);
+      if (!next('_',68)) return reject();
+      Space();
+      return accept();
+    }
+  
+  //=====================================================================
+  //  CUT = "#" Space <#> ;
+  //=====================================================================
+  private boolean CUT()
+    {
+      beginRule(35);
+      if (!next('#',70)) return reject();
       Space();
       return accept();
     }
@@ -665,7 +682,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Space()
     {
-      begin("Space");
+      beginRule(36);
       while (Space_0());
       sem.Space();
       return accept();
@@ -677,7 +694,7 @@ public class Parser extends mouse.runtime.ParserBase
   private boolean Space_0()
     {
       begin("");
-      if (nextIn(" \r\n\t")) return acceptInner();
+      if (nextIn($Set8,72)) return acceptInner();
       if (Comment()) return acceptInner();
       return rejectInner();
     }
@@ -687,10 +704,10 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean Comment()
     {
-      begin("Comment");
-      if (!next("//")) return reject();
+      beginRule(37);
+      if (!next("//",74)) return reject();
       while (!EOL())
-        if (!next()) return reject();
+        if (!next(3)) return reject();
       return accept();
     }
   
@@ -699,7 +716,7 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean EOL()
     {
-      begin("EOL","end of line");
+      beginRule(38);
       if (EOL_0()) return accept();
       if (EOL_1()) return accept();
       return reject();
@@ -711,8 +728,8 @@ public class Parser extends mouse.runtime.ParserBase
   private boolean EOL_0()
     {
       begin("");
-      next('\r');
-      if (!next('\n')) return rejectInner();
+      next('\r',76);
+      if (!next('\n',77)) return rejectInner();
       return acceptInner();
     }
   
@@ -721,8 +738,8 @@ public class Parser extends mouse.runtime.ParserBase
   //-------------------------------------------------------------------
   private boolean EOL_1()
     {
-      begin("","end of text");
-      if (next()) return rejectPred();
+      begin("",78);
+      if (next(3)) return rejectPred();
       return acceptPred();
     }
   
@@ -731,9 +748,179 @@ public class Parser extends mouse.runtime.ParserBase
   //=====================================================================
   private boolean EOT()
     {
-      begin("EOT","end of text");
-      if (!aheadNot()) return reject();
+      beginRule(39);
+      if (!aheadNot(78)) return reject();
       return accept();
     }
   
+  
+  //=======================================================================
+  //
+  //  Character sets
+  //
+  //=======================================================================
+  
+  // [\r\n\]
+  static final long[] $Set0 = {0x0000000000002400L,0x0000000010000000L};
+  // [a-z]
+  static final long[] $Set1 = {0x0000000000000000L,0x07fffffe00000000L};
+  // [A-Z]
+  static final long[] $Set2 = {0x0000000000000000L,0x0000000007fffffeL};
+  // [0-9]
+  static final long[] $Set3 = {0x03ff000000000000L};
+  // [a-f]
+  static final long[] $Set4 = {0x0000000000000000L,0x0000007e00000000L};
+  // [A-F]
+  static final long[] $Set5 = {0x0000000000000000L,0x000000000000007eL};
+  // [&!]
+  static final long[] $Set6 = {0x0000004200000000L};
+  // [?*+]
+  static final long[] $Set7 = {0x80000c0000000000L};
+  // [ \r\n\t]
+  static final long[] $Set8 = {0x0000000100002600L};
+  
+  //=======================================================================
+  //
+  //  Texts for failure messages
+  //
+  //=======================================================================
+  
+  static final String[] expectedList =
+  {
+    "Grammar", // 0
+    "Rule", // 1
+    "Skip", // 2
+    "any character", // 3
+    "right-hand side", // 4
+    "Choice", // 5
+    "Sequence", // 6
+    "Prefixed", // 7
+    "Suffixed", // 8
+    "Primary", // 9
+    "Actions", // 10
+    "OnSucc", // 11
+    "OnFail", // 12
+    "Name", // 13
+    "DiagName", // 14
+    "'<'", // 15
+    "'>'", // 16
+    "StringLit", // 17
+    "'\"'", // 18
+    "CharClass", // 19
+    "'['", // 20
+    "'^['", // 21
+    "']'", // 22
+    "Range", // 23
+    "'-'", // 24
+    "Char", // 25
+    "not [\r\n\\]", // 26
+    "Escape", // 27
+    "'\\t'", // 28
+    "'\\n'", // 29
+    "'\\r'", // 30
+    "'\\u'", // 31
+    "not '\\u'", // 32
+    "'\\'", // 33
+    "Letter", // 34
+    "[a-z]", // 35
+    "[A-Z]", // 36
+    "Digit", // 37
+    "[0-9]", // 38
+    "HexDigit", // 39
+    "[a-f]", // 40
+    "[A-F]", // 41
+    "& or !", // 42
+    "[&!]", // 43
+    "? or * or +", // 44
+    "[?*+]", // 45
+    "*+ or ++", // 46
+    "'*+'", // 47
+    "'++'", // 48
+    "=", // 49
+    "'='", // 50
+    ";", // 51
+    "';'", // 52
+    "/", // 53
+    "'/'", // 54
+    "&", // 55
+    "'&'", // 56
+    "(", // 57
+    "'('", // 58
+    ")", // 59
+    "')'", // 60
+    "{", // 61
+    "'{'", // 62
+    "}", // 63
+    "'}'", // 64
+    "~", // 65
+    "'~'", // 66
+    "_", // 67
+    "'_'", // 68
+    "#", // 69
+    "'#'", // 70
+    "Space", // 71
+    "[ \r\n\t]", // 72
+    "Comment", // 73
+    "'//'", // 74
+    "end of line", // 75
+    "'\r'", // 76
+    "'\n'", // 77
+    "end of text" // 78
+  };
+  
+  //=======================================================================
+  //
+  //  Rules
+  //
+  //=======================================================================
+  
+  static final String[] ruleNames =
+  {
+    "Grammar", // 0
+    "Rule", // 1
+    "Skip", // 2
+    "RuleRhs", // 3
+    "Choice", // 4
+    "Sequence", // 5
+    "Prefixed", // 6
+    "Suffixed", // 7
+    "Primary", // 8
+    "Actions", // 9
+    "OnSucc", // 10
+    "OnFail", // 11
+    "Name", // 12
+    "DiagName", // 13
+    "StringLit", // 14
+    "CharClass", // 15
+    "Range", // 16
+    "Char", // 17
+    "Escape", // 18
+    "Letter", // 19
+    "Digit", // 20
+    "HexDigit", // 21
+    "PREFIX", // 22
+    "SUFFIX", // 23
+    "UNTIL", // 24
+    "EQUAL", // 25
+    "SEMI", // 26
+    "SLASH", // 27
+    "AND", // 28
+    "LPAREN", // 29
+    "RPAREN", // 30
+    "LWING", // 31
+    "RWING", // 32
+    "TILDA", // 33
+    "ANY", // 34
+    "CUT", // 35
+    "Space", // 36
+    "Comment", // 37
+    "EOL", // 38
+    "EOT" // 39
+  };
+  
+  static final int[] ruleDiags =
+  {
+    0,1,2,4,5,6,7,8,9,10,11,12,13,14,17,19,23,25,27,34,37,39,42,44,
+    46,49,51,53,55,57,59,61,63,65,67,69,71,73,75,78
+  };
 }
@@ -0,0 +1,60 @@
+//=========================================================================
+//
+//  This file was generated by Mouse 1.10 at 2026-10-18 14:16:45 GMT
+//  from grammar
+//    '/root/project/mouse/src/main/java/mouse/peg/grammar.peg'.
+//
+//=========================================================================
+
+package mouse.peg;
+
+//---------------------------------------------------------------------
+//  Numbers of rules of Parser,
+//  as returned by Phrase.ruleId().
+//---------------------------------------------------------------------
+public final class ParserRules
+{
+  public static final int Grammar = 0;
+  public static final int Rule = 1;
+  public static final int Skip = 2;
+  public static final int RuleRhs = 3;
+  public static final int Choice = 4;
+  public static final int Sequence = 5;
+  public static final int Prefixed = 6;
+  public static final int Suffixed = 7;
+  public static final int Primary = 8;
+  public static final int Actions = 9;
+  public static final int OnSucc = 10;
+  public static final int OnFail = 11;
+  public static final int Name = 12;
+  public static final int DiagName = 13;
+  public static final int StringLit = 14;
+  public static final int CharClass = 15;
+  public static final int Range = 16;
+  public static final int Char = 17;
+  public static final int Escape = 18;
+  public static final int Letter = 19;
+  public static final int Digit = 20;
+  public static final int HexDigit = 21;
+  public static final int PREFIX = 22;
+  public static final int SUFFIX = 23;
+  public static final int UNTIL = 24;
+  public static final int EQUAL = 25;
+  public static final int SEMI = 26;
+  public static final int SLASH = 27;
+  public static final int AND = 28;
+  public static final int LPAREN = 29;
+  public static final int RPAREN = 30;
+  public static final int LWING = 31;
+  public static final int RWING = 32;
+  public static final int TILDA = 33;
+  public static final int ANY = 34;
+  public static final int CUT = 35;
+  public static final int Space = 36;
+  public static final int Comment = 37;
+  public static final int EOL = 38;
+  public static final int EOT = 39;
+  
+  private ParserRules()
+    {}
+}
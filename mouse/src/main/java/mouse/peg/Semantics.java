@@ -26,6 +26,8 @@
 //   Version 1.4
 //    110919 Modified 'CharClass' to handle enlarged syntax.
 //    110920 Modified 'Suffixed' to create 'PlusPlus' and 'StarPlus' objects.
+//   Version 1.10
+//    261018 Added 'Cut'.
 //
 //=========================================================================
 
@@ -306,6 +308,12 @@ class Semantics extends mouse.runtime.SemanticsBase
   void Any()
     { lhs().put(new Expr.Any()); }
 
+  //-------------------------------------------------------------------
+  //  Primary = CUT
+  //-------------------------------------------------------------------
+  void Cut()
+    { lhs().put(new Expr.Cut()); }
+
   //-------------------------------------------------------------------
   //  Primary = StringLit
   //  Primary = Range
@@ -22,6 +22,8 @@
 //    090701 License changed by the author to Apache v.2.
 //   Version 1.4
 //    110920 Added subclasses 'PlusPlus' and 'StarPlus'.
+//   Version 1.10
+//    261018 Added 'Cut'.
 //
 //=========================================================================
 
@@ -57,5 +59,6 @@ public class Visitor
   public void visit(Expr.CharClass expr) {}
   public void visit(Expr.Range expr) {}
   public void visit(Expr.Any expr) {}
+  public void visit(Expr.Cut expr) {}
 }
 
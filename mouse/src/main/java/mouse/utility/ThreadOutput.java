@@ -0,0 +1,121 @@
+//=========================================================================
+//
+//  Part of PEG parser generator Mouse.
+//
+//  Copyright (C) 2026 by Roman R. Redziejowski (www.romanredz.se).
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//-------------------------------------------------------------------------
+//
+//  Change log
+//   261018 Created for version 1.10.
+//
+//=========================================================================
+
+package mouse.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+//
+//  ThreadOutput
+//
+//-------------------------------------------------------------------------
+//
+//  Output stream to be installed as System.out when parsers run
+//  in several threads. Between 'capture' and 'release', output
+//  written by the calling thread is collected in a buffer, and returned
+//  by 'release'. Output from other threads goes to the original stream.
+//  This makes it possible to print output of each parse as one piece,
+//  in the order of inputs.
+//
+//HHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHHH
+
+public class ThreadOutput extends OutputStream
+{
+  //-------------------------------------------------------------------
+  //  Original stream.
+  //-------------------------------------------------------------------
+  private final PrintStream original;
+
+  //-------------------------------------------------------------------
+  //  Buffer of the current thread, or null if not capturing.
+  //-------------------------------------------------------------------
+  private final ThreadLocal<ByteArrayOutputStream> buffer =
+    new ThreadLocal<ByteArrayOutputStream>();
+
+  //-------------------------------------------------------------------
+  //  Install as System.out.
+  //-------------------------------------------------------------------
+  public static ThreadOutput install()
+    {
+      ThreadOutput t = new ThreadOutput(System.out);
+      System.setOut(new PrintStream(t,true));
+      return t;
+    }
+
+  private ThreadOutput(PrintStream original)
+    { this.original = original; }
+
+  //-------------------------------------------------------------------
+  //  Restore original System.out.
+  //-------------------------------------------------------------------
+  public void uninstall()
+    {
+      System.out.flush();
+      System.setOut(original);
+    }
+
+  //-------------------------------------------------------------------
+  //  Start collecting output of the calling thread.
+  //-------------------------------------------------------------------
+  public void capture()
+    { buffer.set(new ByteArrayOutputStream()); }
+
+  //-------------------------------------------------------------------
+  //  Stop collecting and return what was collected.
+  //-------------------------------------------------------------------
+  public String release()
+    {
+      System.out.flush();
+      ByteArrayOutputStream b = buffer.get();
+      buffer.remove();
+      return b==null? "" : b.toString();
+    }
+
+  //-------------------------------------------------------------------
+  //  OutputStream methods.
+  //-------------------------------------------------------------------
+  public void write(int c)
+    {
+      ByteArrayOutputStream b = buffer.get();
+      if (b!=null) b.write(c);
+      else original.write(c);
+    }
+
+  public void write(byte[] bytes, int off, int len)
+    {
+      ByteArrayOutputStream b = buffer.get();
+      if (b!=null) b.write(bytes,off,len);
+      else original.write(bytes,off,len);
+    }
+
+  public void flush()
+    {
+      if (buffer.get()==null) original.flush();
+    }
+}